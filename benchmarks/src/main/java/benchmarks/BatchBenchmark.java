@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Batch evaluation and expansion of packed classic positions; scores are per position. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BatchBenchmark {
+    private static final int BATCH = 4096;
+    // Classic rules: 5^4 hand combinations times 2 players to move, 4 tap moves.
+    private static final int STATE_COUNT = 1250;
+    private static final int MOVE_COUNT = 4;
+
+    private Object ai;
+    private int[] states;
+    private int[] scores;
+    private int[] successors;
+
+    @Setup
+    public void setUp() throws Throwable {
+        ai = Game.newAi();
+        states = new int[BATCH];
+        Random random = new Random(42);
+        for (int i = 0; i < BATCH; i++) {
+            states[i] = random.nextInt(STATE_COUNT);
+        }
+        scores = new int[BATCH];
+        successors = new int[BATCH * MOVE_COUNT];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] evaluate() throws Throwable {
+        Game.evaluate(ai, states, BATCH, 1, scores);
+        return scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] expand() throws Throwable {
+        Game.expand(states, BATCH, successors);
+        return successors;
+    }
+}
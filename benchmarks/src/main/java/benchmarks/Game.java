@@ -0,0 +1,147 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Calls into the game classes. They live in the default package, which code in a named package
+ * can't import, and JMH won't generate benchmarks outside a package, so every call goes through
+ * a static final method handle. The JIT treats those as constants and inlines the target, so a
+ * call costs the same as a direct one.
+ */
+final class Game {
+    private static final MethodHandle NEW_GAME;
+    private static final MethodHandle COPY_GAME;
+    private static final MethodHandle IS_VALID_MOVE;
+    private static final MethodHandle MAKE_MOVE;
+    private static final MethodHandle UNMAKE_MOVE;
+    private static final MethodHandle MAKE_MOVE_BY_HAND;
+    private static final MethodHandle IS_VALID_MOVE_BY_NAME;
+    private static final MethodHandle MAKE_MOVE_BY_NAME;
+    private static final MethodHandle NEW_AI;
+    private static final MethodHandle ALL_VALID_MOVES;
+    private static final MethodHandle BEST_MOVE;
+    private static final MethodHandle CLEAR_TABLES;
+    private static final MethodHandle EVALUATE;
+    private static final MethodHandle EXPAND;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> game = Class.forName("ChopsticksGame");
+            Class<?> ai = Class.forName("Minmax");
+
+            NEW_GAME = lookup.findConstructor(game, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            COPY_GAME = lookup.findConstructor(game, MethodType.methodType(void.class, game))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            IS_VALID_MOVE = lookup.findVirtual(game, "isValidMove", MethodType.methodType(boolean.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class));
+            MAKE_MOVE = lookup.findVirtual(game, "makeMove", MethodType.methodType(boolean.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class));
+            UNMAKE_MOVE = lookup.findVirtual(game, "unmakeMove", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            MAKE_MOVE_BY_HAND = lookup.findVirtual(game, "makeMove",
+                            MethodType.methodType(boolean.class, int.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class));
+            IS_VALID_MOVE_BY_NAME = lookup.findVirtual(game, "isValidMove",
+                            MethodType.methodType(boolean.class, String.class, String.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, String.class, String.class));
+            MAKE_MOVE_BY_NAME = lookup.findVirtual(game, "makeMove",
+                            MethodType.methodType(boolean.class, String.class, String.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, String.class, String.class));
+
+            NEW_AI = lookup.findConstructor(ai, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            ALL_VALID_MOVES = lookup.findVirtual(ai, "getAllValidMoves", MethodType.methodType(List.class, game))
+                    .asType(MethodType.methodType(List.class, Object.class, Object.class));
+            BEST_MOVE = lookup.findVirtual(ai, "getBestMove", MethodType.methodType(String[].class, game, int.class))
+                    .asType(MethodType.methodType(String[].class, Object.class, Object.class, int.class));
+            CLEAR_TABLES = lookup.findVirtual(ai, "clearTables", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            EVALUATE = lookup.findVirtual(ai, "evaluate",
+                            MethodType.methodType(void.class, int[].class, int.class, int.class, int[].class))
+                    .asType(MethodType.methodType(void.class, Object.class, int[].class, int.class, int.class, int[].class));
+
+            Class<?> rules = Class.forName("Rules");
+            EXPAND = lookup.findVirtual(rules, "expand",
+                            MethodType.methodType(void.class, int[].class, int.class, int[].class))
+                    .bindTo(lookup.findStaticGetter(rules, "CLASSIC", rules).invoke());
+        } catch (Throwable e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Game() {
+    }
+
+    // A classic game after playing the given move codes from the start.
+    static Object play(int... moves) throws Throwable {
+        Object game = newGame();
+        for (int move : moves) {
+            if (!makeMove(game, move)) {
+                throw new IllegalStateException("Illegal move " + move + " in the position setup");
+            }
+        }
+        return game;
+    }
+
+    static Object newGame() throws Throwable {
+        return (Object) NEW_GAME.invokeExact();
+    }
+
+    static Object copy(Object game) throws Throwable {
+        return (Object) COPY_GAME.invokeExact(game);
+    }
+
+    static boolean isValidMove(Object game, int move) throws Throwable {
+        return (boolean) IS_VALID_MOVE.invokeExact(game, move);
+    }
+
+    static boolean makeMove(Object game, int move) throws Throwable {
+        return (boolean) MAKE_MOVE.invokeExact(game, move);
+    }
+
+    static boolean unmakeMove(Object game) throws Throwable {
+        return (boolean) UNMAKE_MOVE.invokeExact(game);
+    }
+
+    static boolean makeMove(Object game, int playerHand, int opponentHand) throws Throwable {
+        return (boolean) MAKE_MOVE_BY_HAND.invokeExact(game, playerHand, opponentHand);
+    }
+
+    static boolean isValidMove(Object game, String playerHand, String opponentHand) throws Throwable {
+        return (boolean) IS_VALID_MOVE_BY_NAME.invokeExact(game, playerHand, opponentHand);
+    }
+
+    static boolean makeMove(Object game, String playerHand, String opponentHand) throws Throwable {
+        return (boolean) MAKE_MOVE_BY_NAME.invokeExact(game, playerHand, opponentHand);
+    }
+
+    static Object newAi() throws Throwable {
+        return (Object) NEW_AI.invokeExact();
+    }
+
+    static List<?> getAllValidMoves(Object ai, Object game) throws Throwable {
+        return (List<?>) ALL_VALID_MOVES.invokeExact(ai, game);
+    }
+
+    static String[] getBestMove(Object ai, Object game, int depth) throws Throwable {
+        return (String[]) BEST_MOVE.invokeExact(ai, game, depth);
+    }
+
+    static void clearTables(Object ai) throws Throwable {
+        CLEAR_TABLES.invokeExact(ai);
+    }
+
+    static void evaluate(Object ai, int[] states, int count, int aiPlayer, int[] scores) throws Throwable {
+        EVALUATE.invokeExact(ai, states, count, aiPlayer, scores);
+    }
+
+    // Successors of classic positions, see Rules.expand.
+    static void expand(int[] states, int count, int[] successors) throws Throwable {
+        EXPAND.invokeExact(states, count, successors);
+    }
+}
@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Move generation and move making. The makeMove benchmarks play on a fresh copy each time
+ * (copy on its own is the baseline to subtract); makeAndUnmakeMove plays and takes back the
+ * move on the same game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmark {
+    private static final String[] HANDS = {"left", "right"};
+    // Classic rules: own hand * 2 + target hand.
+    private static final int MOVE_COUNT = 4;
+
+    @Param({"start", "early", "middle", "late"})
+    public String position;
+
+    private Object game;
+    private Object ai;
+    private int[] legalMoves;
+    private String[][] legalNames;
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        game = Positions.create(position);
+        ai = Game.newAi();
+
+        int count = 0;
+        for (int move = 0; move < MOVE_COUNT; move++) {
+            if (Game.isValidMove(game, move)) count++;
+        }
+        legalMoves = new int[count];
+        legalNames = new String[count][];
+        count = 0;
+        for (int move = 0; move < MOVE_COUNT; move++) {
+            if (Game.isValidMove(game, move)) {
+                legalMoves[count] = move;
+                legalNames[count++] = new String[] {HANDS[move >> 1], HANDS[move & 1]};
+            }
+        }
+    }
+
+    // Cycles through the legal moves so no single branch gets all the profile.
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == legalMoves.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object copy() throws Throwable {
+        return Game.copy(game);
+    }
+
+    @Benchmark
+    public Object makeMove() throws Throwable {
+        Object copy = Game.copy(game);
+        Game.makeMove(copy, legalMoves[nextIndex()]);
+        return copy;
+    }
+
+    @Benchmark
+    public boolean makeAndUnmakeMove() throws Throwable {
+        Game.makeMove(game, legalMoves[nextIndex()]);
+        return Game.unmakeMove(game);
+    }
+
+    @Benchmark
+    public Object makeMoveByHand() throws Throwable {
+        Object copy = Game.copy(game);
+        int move = legalMoves[nextIndex()];
+        Game.makeMove(copy, move >> 1, move & 1);
+        return copy;
+    }
+
+    @Benchmark
+    public Object makeMoveByName() throws Throwable {
+        Object copy = Game.copy(game);
+        String[] names = legalNames[nextIndex()];
+        Game.makeMove(copy, names[0], names[1]);
+        return copy;
+    }
+
+    @Benchmark
+    public void isValidMove(Blackhole blackhole) throws Throwable {
+        for (int move = 0; move < MOVE_COUNT; move++) {
+            blackhole.consume(Game.isValidMove(game, move));
+        }
+    }
+
+    @Benchmark
+    public void isValidMoveByName(Blackhole blackhole) throws Throwable {
+        for (String own : HANDS) {
+            for (String target : HANDS) {
+                blackhole.consume(Game.isValidMove(game, own, target));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object getAllValidMoves() throws Throwable {
+        return Game.getAllValidMoves(ai, game);
+    }
+}
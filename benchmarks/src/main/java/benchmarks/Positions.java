@@ -0,0 +1,27 @@
+package benchmarks;
+
+/** The fixed classic positions every benchmark runs from, as move codes played from the start. */
+final class Positions {
+    static final String[] NAMES = {"start", "early", "middle", "late"};
+
+    private Positions() {
+    }
+
+    static Object create(String name) throws Throwable {
+        switch (name) {
+            case "start":
+                return Game.play();
+            case "early":
+                // P1 2-1 against P2 1-2, player 1 to move.
+                return Game.play(3, 0);
+            case "middle":
+                // P1 4-1 against P2 2-2.
+                return Game.play(3, 0, 2, 0);
+            case "late":
+                // P1 0-1 against P2 2-1, only two moves left.
+                return Game.play(3, 0, 2, 0, 1, 2);
+            default:
+                throw new IllegalArgumentException("Unknown position: " + name);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fixed-depth getBestMove. The transposition table would answer every call after the first
+ * from memory, so each search starts from cleared tables; clearTables on its own is the
+ * baseline to subtract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"start", "early", "middle", "late"})
+    public String position;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+    public int depth;
+
+    private Object game;
+    private Object ai;
+
+    @Setup
+    public void setUp() throws Throwable {
+        game = Positions.create(position);
+        ai = Game.newAi();
+    }
+
+    @Benchmark
+    public String[] getBestMove() throws Throwable {
+        Game.clearTables(ai);
+        return Game.getBestMove(ai, game, depth);
+    }
+
+    @Benchmark
+    public Object clearTables() throws Throwable {
+        Game.clearTables(ai);
+        return ai;
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs AI searches on a background thread so the Swing EDT never blocks on them.
+ * Cancelling a returned future interrupts the search, and no progress message of it is passed on
+ * afterwards. Progress messages (one per search depth finished) are passed to the caller from the
+ * worker thread, so GUI callers should hop back to the EDT themselves.
+ * The AI works on a snapshot of the game taken when the move is requested, so requests can
+ * come from any thread.
+ *
+ * <p>Fixed-depth answers are kept in one MoveCache shared by every window. Starting with
+ * {@code -Dchopsticks.moveCache=FILE} loads it from FILE and saves it back when the JVM exits.
+ * {@code -Dchopsticks.openingBook=FILE} gives the engines an opening book for the variant played.
+ */
+public class AiService {
+    public static final int EASY = 1;
+    public static final int MEDIUM = 2;
+    public static final int HARD = 3;
+
+    private static final int MEDIUM_DEPTH = 2;
+    private static final int MOVE_CACHE_SIZE = 1 << 16;
+    private static final MoveCache MOVE_CACHE = createMoveCache(System.getProperty("chopsticks.moveCache"));
+    private static final String OPENING_BOOK = System.getProperty("chopsticks.openingBook");
+
+    // Minmax is not thread-safe; engines are only ever touched from the single worker thread.
+    private final Map<Rules, Minmax> engines = new HashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chopsticks-ai");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // MEDIUM deepens one ply at a time up to its fixed depth so that each depth can be reported;
+    // HARD is a table lookup and EASY a random move, with nothing in between worth reporting.
+    public CompletableFuture<String[]> requestMove(ChopsticksGame game, int difficulty,
+                                                   Consumer<String> progress) {
+        ChopsticksGame snapshot = new ChopsticksGame(game.snapshot());
+        return submit(progress, report -> {
+            Minmax ai = engineFor(snapshot.getRules());
+            switch (difficulty) {
+                case MEDIUM:
+                    for (int depth = 1; depth < MEDIUM_DEPTH; depth++) {
+                        ai.getBestMove(snapshot, depth);
+                        if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+                        report.accept(depthMessage(depth));
+                    }
+                    return ai.getBestMove(snapshot, MEDIUM_DEPTH);
+                case HARD:
+                    return ai.getPerfectMove(snapshot);
+                default:
+                    return ai.getRandomMove(snapshot);
+            }
+        });
+    }
+
+    public CompletableFuture<String[]> requestMoveWithin(ChopsticksGame game, long budgetMillis,
+                                                         Consumer<String> progress) {
+        ChopsticksGame snapshot = new ChopsticksGame(game.snapshot());
+        return submit(progress, report -> engineFor(snapshot.getRules()).getBestMoveWithin(snapshot, budgetMillis,
+                depth -> report.accept(depthMessage(depth))));
+    }
+
+    private static String depthMessage(int depth) {
+        return "Computer is thinking... (depth " + depth + ")";
+    }
+
+    private Minmax engineFor(Rules rules) {
+        return engines.computeIfAbsent(rules, r -> {
+            Minmax ai = new Minmax(r);
+            ai.setMoveCache(MOVE_CACHE);
+            if (OPENING_BOOK != null) ai.setOpeningBook(Paths.get(OPENING_BOOK));
+            return ai;
+        });
+    }
+
+    private static MoveCache createMoveCache(String file) {
+        MoveCache cache = new MoveCache(MOVE_CACHE_SIZE);
+        if (file == null) return cache;
+
+        Path path = Paths.get(file);
+        try {
+            cache.load(path);
+        } catch (IOException e) {
+            System.err.println("Ignoring move cache " + file + ": " + e.getMessage());
+            cache.clear();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                cache.save(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "chopsticks-move-cache"));
+        return cache;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<String[]> submit(Consumer<String> progress,
+                                               Function<Consumer<String>, String[]> task) {
+        CompletableFuture<String[]> result = new CompletableFuture<>();
+        // Once the request is cancelled (or answered) its caller has moved on: stop reporting.
+        Consumer<String> report = message -> {
+            if (progress != null && !result.isDone()) progress.accept(message);
+        };
+        Future<?> running = executor.submit(() -> {
+            if (result.isDone()) return;
+            try {
+                result.complete(task.apply(report));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        // CompletableFuture.cancel can't interrupt anything by itself, so forward it to the worker.
+        result.whenComplete((move, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Anything that can pick a move for the player to move: fixed-depth minimax, the solver,
+ * random play or Mcts. Moves are Rules move codes, for ChopsticksGame.makeMove(int).
+ */
+public interface AiStrategy {
+    /** The move to play, or Rules.NONE if the game is over or there is nothing to play. */
+    int chooseMove(ChopsticksGame game);
+
+    // Work done so far, for reports like Tournament's: positions searched for minimax,
+    // playouts for Mcts, 0 for strategies that don't search.
+    long getNodeCount();
+
+    static AiStrategy fixedDepth(Minmax ai, int depth) {
+        return new AiStrategy() {
+            @Override
+            public int chooseMove(ChopsticksGame game) {
+                return ai.getBestMoveCode(game, depth);
+            }
+
+            @Override
+            public long getNodeCount() {
+                return ai.getNodeCount();
+            }
+        };
+    }
+
+    static AiStrategy random(Minmax ai) {
+        return new AiStrategy() {
+            @Override
+            public int chooseMove(ChopsticksGame game) {
+                return ai.getRandomMoveCode(game);
+            }
+
+            @Override
+            public long getNodeCount() {
+                return 0;
+            }
+        };
+    }
+
+    // Perfect play from the solved table; two-player variants only.
+    static AiStrategy perfect() {
+        return new AiStrategy() {
+            @Override
+            public int chooseMove(ChopsticksGame game) {
+                return game.isGameOver() ? Rules.NONE : Solver.lookup(game).getBestMove();
+            }
+
+            @Override
+            public long getNodeCount() {
+                return 0;
+            }
+        };
+    }
+}
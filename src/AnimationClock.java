@@ -0,0 +1,100 @@
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.awt.Rectangle;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The one Swing timer behind every animation in the GUI. Each frame it ticks the running
+ * animations, collects the components they marked dirty (merging the regions marked on the
+ * same component) and repaints just those, once each. When the last animation finishes the
+ * timer stops, so an idle window costs nothing; adding an animation starts it again.
+ *
+ * <p>Everything here runs on the event dispatch thread, like the rest of Swing.
+ */
+public final class AnimationClock {
+    public static final int FRAME_MILLIS = 30;
+    // Length of one pulse (0.3 up to 1 and back) for highlights that breathe while shown.
+    private static final long PULSE_MILLIS = 1400;
+
+    private static AnimationClock shared;
+
+    /** Something drawn differently from frame to frame. */
+    public interface Animation {
+        // Advances to time now (System.nanoTime), marking what changed with markDirty;
+        // false once the animation is over, which removes it from the clock.
+        boolean tick(long now);
+    }
+
+    private final Timer timer = new Timer(FRAME_MILLIS, e -> frame());
+    private final Set<Animation> animations = new LinkedHashSet<>();
+    private final Map<JComponent, Rectangle> dirty = new LinkedHashMap<>();
+    private Animation[] running = new Animation[8];
+
+    private AnimationClock() {
+    }
+
+    public static AnimationClock shared() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("AnimationClock is for the event dispatch thread");
+        }
+        if (shared == null) shared = new AnimationClock();
+        return shared;
+    }
+
+    // Starts ticking animation from the next frame; adding one that is already running does nothing.
+    public void add(Animation animation) {
+        animations.add(animation);
+        if (!timer.isRunning()) timer.start();
+    }
+
+    public void remove(Animation animation) {
+        animations.remove(animation);
+    }
+
+    public boolean isRunning(Animation animation) {
+        return animations.contains(animation);
+    }
+
+    /** Repaints all of component at the end of this frame. */
+    public void markDirty(JComponent component) {
+        markDirty(component, 0, 0, component.getWidth(), component.getHeight());
+    }
+
+    /** Repaints the given region of component at the end of this frame. */
+    public void markDirty(JComponent component, int x, int y, int width, int height) {
+        Rectangle region = dirty.get(component);
+        if (region == null) {
+            dirty.put(component, new Rectangle(x, y, width, height));
+        } else {
+            region.add(new Rectangle(x, y, width, height));
+        }
+    }
+
+    // A value going from 0.3 to 1 and back every PULSE_MILLIS, the same for everyone at time now.
+    public static float pulse(long now) {
+        long half = PULSE_MILLIS / 2;
+        long phase = Math.floorMod(now / 1_000_000L, PULSE_MILLIS);
+        float rise = phase < half ? (float) phase / half : (float) (PULSE_MILLIS - phase) / half;
+        return 0.3f + 0.7f * rise;
+    }
+
+    private void frame() {
+        long now = System.nanoTime();
+        // Animations may add or remove others while ticking; those changes count from the next frame.
+        running = animations.toArray(running);
+        for (int i = 0; i < running.length && running[i] != null; i++) {
+            if (!running[i].tick(now)) animations.remove(running[i]);
+            running[i] = null;
+        }
+
+        for (Map.Entry<JComponent, Rectangle> entry : dirty.entrySet()) {
+            entry.getKey().repaint(entry.getValue());
+        }
+        dirty.clear();
+        if (animations.isEmpty()) timer.stop();
+    }
+}
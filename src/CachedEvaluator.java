@@ -0,0 +1,45 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Remembers the scores of another evaluator, for evaluators that are expensive to run. A
+ * fixed-size, direct-mapped table shared without locks by every search thread, the same way
+ * the transposition table is: a newer position simply replaces an older one in its slot.
+ */
+public final class CachedEvaluator implements Evaluator {
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long VALID = 1L << 16;
+
+    private final Evaluator delegate;
+    // State in the upper 32 bits, AI player in the next 8, a valid bit and the score + 0x8000
+    // in the low 16 bits.
+    private final long[] entries;
+
+    public CachedEvaluator(Evaluator delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.delegate = delegate;
+        this.entries = new long[capacity];
+    }
+
+    @Override
+    public int evaluate(int state, int aiPlayer) {
+        long key = ((long) state << 32) | ((long) aiPlayer << 24) | VALID;
+        int index = Integer.remainderUnsigned(state * 31 + aiPlayer, entries.length);
+        long entry = (long) ENTRY.getOpaque(entries, index);
+        if ((entry & ~0xFFFFL) == key) {
+            return (int) (entry & 0xFFFF) - 0x8000;
+        }
+
+        int score = delegate.evaluate(state, aiPlayer);
+        ENTRY.setOpaque(entries, index, key | (score + 0x8000L));
+        return score;
+    }
+
+    // Scores exactly like the evaluator it wraps.
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+}
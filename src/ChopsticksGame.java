@@ -1,165 +1,346 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 
+/**
+ * A game in progress. The mutating methods are meant for one thread at a time (the EDT, or
+ * whoever owns the game); any other thread reads the game through {@link #snapshot()}.
+ */
 public class ChopsticksGame {
-    private int p1Left;
-    private int p1Right;
-    private int p2Left;
-    private int p2Right;
+    // Hand indexes for the two-handed game; other variants number their hands 0, 1, 2...
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+
+    // Undo records, one long per move played: a tap keeps the hit slot, its old value and the
+    // player who moved; a split (which rewrites all the mover's hands) keeps the packed state.
+    private static final long SPLIT_UNDO = 1L << 63;
+
+    private static final VarHandle PUBLISHED;
+    static {
+        try {
+            PUBLISHED = MethodHandles.lookup().findVarHandle(ChopsticksGame.class, "published", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Rules rules;
+    // Player-major: hands[(player - 1) * rules.getHands() + hand].
+    private final int[] hands;
     private int currentPlayer;
-    private final int MAX_FINGERS = 5;
+    // Packed state (see Rules.encode), updated on every change like positionKey.
+    private int state;
     private boolean gameOver;
     private int winner;
+    // Zobrist key of hands + player to move, updated on every change (see Rules.positionKey).
+    private long positionKey;
+    private long[] history;
+    private int historySize;
+    private boolean keepsUndo = true;
+    // State, winner and sequence number packed by GameSnapshot.pack, stored with release
+    // semantics after every change; the only field other threads may read. A long rather
+    // than a snapshot object keeps makeMove and unmakeMove free of allocation.
+    @SuppressWarnings("unused")
+    private long published;
+    private long sequence;
 
     public ChopsticksGame() {
+        this(Rules.CLASSIC);
+    }
+
+    public ChopsticksGame(Rules rules) {
+        this.rules = rules;
+        this.hands = new int[rules.getPlayers() * rules.getHands()];
         resetGame();
     }
 
+    public ChopsticksGame(ChopsticksGame other) {
+        rules = other.rules;
+        hands = other.hands.clone();
+        currentPlayer = other.currentPlayer;
+        state = other.state;
+        gameOver = other.gameOver;
+        winner = other.winner;
+        positionKey = other.positionKey;
+        history = other.historySize == 0 ? null : Arrays.copyOf(other.history, other.historySize);
+        historySize = other.historySize;
+        keepsUndo = other.keepsUndo;
+        publish();
+    }
+
+    // A game at the snapshot's position, without the moves that led there.
+    public ChopsticksGame(GameSnapshot snapshot) {
+        rules = snapshot.getRules();
+        hands = new int[rules.getPlayers() * rules.getHands()];
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                hands[slot(player, hand)] = snapshot.getHand(player, hand);
+            }
+        }
+        currentPlayer = snapshot.getCurrentPlayer();
+        state = snapshot.getPackedState();
+        gameOver = snapshot.isGameOver();
+        winner = snapshot.getWinner();
+        positionKey = rules.positionKey(state);
+        publish();
+    }
+
     public void resetGame() {
-        p1Left = 1;
-        p1Right = 1;
-        p2Left = 1;
-        p2Right = 1;
+        Arrays.fill(hands, 1);
         currentPlayer = 1;
+        state = rules.encode(hands, currentPlayer);
         gameOver = false;
         winner = 0;
+        historySize = 0;
+        positionKey = rules.positionKey(state);
+        publish();
     }
 
+    // The String API names the mover's hand and a hand of the next opponent still in the game.
     public boolean isValidMove(String playerHand, String opponentHand) {
-        if (gameOver) {
+        return isValidMove(rules.handIndex(playerHand), rules.handIndex(opponentHand));
+    }
+
+    public boolean makeMove(String playerHand, String opponentHand) {
+        return makeMove(rules.handIndex(playerHand), rules.handIndex(opponentHand));
+    }
+
+    // Same as the String API with hand indexes (LEFT/RIGHT), without any name lookups.
+    public boolean isValidMove(int playerHand, int opponentHand) {
+        int move = toMove(playerHand, opponentHand);
+        return move != Rules.NONE && isValidMove(move);
+    }
+
+    public boolean makeMove(int playerHand, int opponentHand) {
+        int move = toMove(playerHand, opponentHand);
+        return move != Rules.NONE && makeMove(move);
+    }
+
+    // Redistributes the current player's fingers, e.g. split(2, 2) from 1 and 3.
+    public boolean split(int... newHands) {
+        int move = rules.splitMove(newHands);
+        return move != Rules.NONE && makeMove(move);
+    }
+
+    /** Checks a move given as a {@link Rules} move code. */
+    public boolean isValidMove(int move) {
+        if (gameOver || move < 0 || move >= rules.getMoveCount()) {
             return false;
         }
 
-        if (playerHand == null || opponentHand == null ||
-                (!playerHand.equalsIgnoreCase("left") && !playerHand.equalsIgnoreCase("right")) ||
-                (!opponentHand.equalsIgnoreCase("left") && !opponentHand.equalsIgnoreCase("right"))) {
-            return false;
+        if (rules.isSplit(move)) {
+            int total = ownTotal();
+            int index = move - rules.getTapCount();
+            return index < rules.splitCount(total)
+                    && !rules.isRearrangement(hands, slot(currentPlayer, 0), total, index);
         }
 
-        if (currentPlayer == 1) {
-            int attackingValue = playerHand.equalsIgnoreCase("left") ? p1Left : p1Right;
-            if (attackingValue == 0) {
-                return false;
-            }
+        int attackingValue = hands[slot(currentPlayer, rules.ownHand(move))];
+        int targetValue = hands[slot(targetPlayer(move), rules.targetHand(move))];
+        return attackingValue != 0 && targetValue != 0;
+    }
 
-            int targetValue = opponentHand.equalsIgnoreCase("left") ? p2Left : p2Right;
-            if (targetValue == 0) {
-                return false;
+    /** Plays a move given as a {@link Rules} move code. */
+    public boolean makeMove(int move) {
+        if (!isValidMove(move)) {
+            return false;
+        }
+
+        if (rules.isSplit(move)) {
+            pushUndo(SPLIT_UNDO | (state & 0xFFFFFFFFL));
+            int total = ownTotal();
+            int index = move - rules.getTapCount();
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                setHand(slot(currentPlayer, hand), rules.splitHand(total, index, hand));
             }
         } else {
-            int attackingValue = playerHand.equalsIgnoreCase("left") ? p2Left : p2Right;
-            if (attackingValue == 0) {
-                return false;
-            }
+            int attackValue = hands[slot(currentPlayer, rules.ownHand(move))];
+            int target = slot(targetPlayer(move), rules.targetHand(move));
+            pushUndo(((long) target << 32) | ((long) hands[target] << 8) | currentPlayer);
+            setHand(target, rules.tap(hands[target], attackValue));
+        }
 
-            int targetValue = opponentHand.equalsIgnoreCase("left") ? p1Left : p1Right;
-            if (targetValue == 0) {
-                return false;
-            }
+        updateWinner();
+
+        if (!gameOver) {
+            setCurrentPlayer(nextAlivePlayer(currentPlayer));
         }
 
+        publish();
         return true;
     }
 
-    public boolean makeMove(String playerHand, String opponentHand) {
-        if (!isValidMove(playerHand, opponentHand)) {
+    /**
+     * Takes back the last move played with makeMove or split, restoring the hands, the player
+     * to move and the game-over flag. Returns false if there is nothing to take back.
+     */
+    public boolean unmakeMove() {
+        if (historySize == 0) {
             return false;
         }
 
-        int attackValue;
-
-        if (currentPlayer == 1) {
-            attackValue = playerHand.equalsIgnoreCase("left") ? p1Left : p1Right;
-
-            if (opponentHand.equalsIgnoreCase("left")) {
-                int newValue = (p2Left + attackValue) % MAX_FINGERS;
-                p2Left = newValue == 0 ? 0 : newValue;
-            } else {
-                int newValue = (p2Right + attackValue) % MAX_FINGERS;
-                p2Right = newValue == 0 ? 0 : newValue;
+        long undo = history[--historySize];
+        if ((undo & SPLIT_UNDO) != 0) {
+            int before = (int) undo;
+            for (int player = 1; player <= rules.getPlayers(); player++) {
+                for (int hand = 0; hand < rules.getHands(); hand++) {
+                    setHand(slot(player, hand), rules.hand(before, player, hand));
+                }
             }
+            setCurrentPlayer(rules.currentPlayer(before));
         } else {
-            attackValue = playerHand.equalsIgnoreCase("left") ? p2Left : p2Right;
-
-            if (opponentHand.equalsIgnoreCase("left")) {
-                int newValue = (p1Left + attackValue) % MAX_FINGERS;
-                p1Left = newValue == 0 ? 0 : newValue;
-            } else {
-                int newValue = (p1Right + attackValue) % MAX_FINGERS;
-                p1Right = newValue == 0 ? 0 : newValue;
-            }
+            setHand((int) (undo >>> 32), (int) undo >>> 8);
+            setCurrentPlayer((int) undo & 0xFF);
         }
+        // Moves are only played in running games.
+        gameOver = false;
+        winner = 0;
+        publish();
+        return true;
+    }
 
+    // Moves that unmakeMove can still take back.
+    public int getHistorySize() {
+        return historySize;
+    }
 
-        checkWinner();
-
-        if (!gameOver) {
-            currentPlayer = (currentPlayer == 1) ? 2 : 1;
+    /**
+     * Whether makeMove and split keep an undo record (one long per move) for unmakeMove; on by
+     * default, for searches that play and take back moves on one game. The GUI and the server
+     * never take a move back, so they turn it off rather than hold on to every move of a game.
+     * Turning it off also forgets the records kept so far.
+     */
+    public void setUndoHistory(boolean keep) {
+        keepsUndo = keep;
+        if (!keep) {
+            history = null;
+            historySize = 0;
         }
-
-        return true;
     }
 
     public void checkWinner() {
-        boolean p1Alive = (p1Left > 0) || (p1Right > 0);
-        boolean p2Alive = (p2Left > 0) || (p2Right > 0);
+        if (updateWinner()) publish();
+    }
 
-        if (!p2Alive || (currentPlayer == 2 && getAllValidMoves().isEmpty())) {
-            winner = 1;
-            gameOver = true;
-        } else if (!p1Alive || (currentPlayer == 1 && getAllValidMoves().isEmpty())) {
-            winner = 2;
-            gameOver = true;
+    /**
+     * The latest state of the game, safe to call from any thread. It never changes afterwards,
+     * so a painter or logger gets one consistent view however many moves happen meanwhile.
+     */
+    public GameSnapshot snapshot() {
+        return new GameSnapshot(rules, (long) PUBLISHED.getAcquire(this));
+    }
+
+    // Sets gameOver and winner once only one player has fingers left; true if it did.
+    private boolean updateWinner() {
+        int survivor = 0;
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            if (!isAlive(player)) continue;
+            if (survivor != 0) return false;
+            survivor = player;
         }
+
+        // Nobody left at all can't happen from a tap; credit the player who just moved.
+        winner = survivor != 0 ? survivor : currentPlayer;
+        gameOver = true;
+        return true;
     }
 
-    private List<String[]> getAllValidMoves() {
-        List<String[]> moves = new ArrayList<>();
+    public String getGameState() {
+        StringBuilder sb = new StringBuilder();
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            sb.append("Player ").append(player).append(": ");
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                String name = rules.handName(hand);
+                if (hand > 0) sb.append(", ");
+                sb.append(Character.toUpperCase(name.charAt(0))).append(name.substring(1))
+                        .append('=').append(getHand(player, hand));
+            }
+            sb.append('\n');
+        }
+        sb.append("Current Player: ").append(currentPlayer).append('\n')
+                .append("Game Over: ").append(gameOver).append(", Winner: ").append(winner);
+        return sb.toString();
+    }
 
-        if (gameOver) {
-            return moves;
+    private int toMove(int ownHand, int targetHand) {
+        if (ownHand < 0 || ownHand >= rules.getHands() || targetHand < 0 || targetHand >= rules.getHands()) {
+            return Rules.NONE;
         }
 
-        String[] playerHands = {"left", "right"};
-        String[] opponentHands = {"left", "right"};
+        int opponent = nextAlivePlayer(currentPlayer);
+        int seatOffset = (opponent - currentPlayer + rules.getPlayers()) % rules.getPlayers();
+        return seatOffset == 0 ? Rules.NONE : rules.move(ownHand, seatOffset, targetHand);
+    }
 
-        for (String playerHand : playerHands) {
-            int attackValue = currentPlayer == 1 ?
-                    (playerHand.equals("left") ? p1Left : p1Right ):
-                    (playerHand.equals("left") ? p2Left : p2Right);
+    private void setHand(int slot, int value) {
+        positionKey ^= rules.handKey(slot, hands[slot]) ^ rules.handKey(slot, value);
+        state += (value - hands[slot]) * rules.slotWeight(slot);
+        hands[slot] = value;
+    }
+
+    private void setCurrentPlayer(int player) {
+        positionKey ^= rules.sideKey(currentPlayer) ^ rules.sideKey(player);
+        state += player - currentPlayer;
+        currentPlayer = player;
+    }
+
+    // A release store: no fence on the make/unmake path, and a reader's acquire load sees the
+    // whole position it describes.
+    private void publish() {
+        PUBLISHED.setRelease(this, GameSnapshot.pack(state, winner, ++sequence));
+    }
 
-            if (attackValue == 0) continue;
+    private void pushUndo(long undo) {
+        if (!keepsUndo) return;
+        if (history == null) {
+            history = new long[16];
+        } else if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        history[historySize++] = undo;
+    }
 
-            for (String opponentHand : opponentHands) {
-                int targetValue = currentPlayer == 1 ?
-                        (opponentHand.equals("left") ? p2Left : p2Right) :
-                        (opponentHand.equals("left") ? p1Left : p1Right);
+    private int targetPlayer(int move) {
+        return (currentPlayer - 1 + rules.seatOffset(move)) % rules.getPlayers() + 1;
+    }
 
-                if (targetValue == 0) continue;
+    private int nextAlivePlayer(int player) {
+        for (int offset = 1; offset < rules.getPlayers(); offset++) {
+            int candidate = (player - 1 + offset) % rules.getPlayers() + 1;
+            if (isAlive(candidate)) return candidate;
+        }
+        return player;
+    }
 
-                moves.add(new String[]{playerHand, opponentHand});
-            }
+    private int ownTotal() {
+        int total = 0;
+        for (int hand = 0; hand < rules.getHands(); hand++) {
+            total += getHand(currentPlayer, hand);
         }
+        return total;
+    }
 
-        return moves;
+    private boolean isAlive(int player) {
+        for (int hand = 0; hand < rules.getHands(); hand++) {
+            if (getHand(player, hand) > 0) return true;
+        }
+        return false;
     }
 
-    public String getGameState() {
-        return String.format(
-                "Player 1: Left=%d, Right=%d\n" +
-                        "Player 2: Left=%d, Right=%d\n" +
-                        "Current Player: %d\n" +
-                        "Game Over: %b, Winner: %d",
-                p1Left, p1Right, p2Left, p2Right, currentPlayer, gameOver, winner
-        );
+    private int slot(int player, int hand) {
+        return (player - 1) * rules.getHands() + hand;
     }
 
     // Getters
-    public int getP1Left() { return p1Left; }
-    public int getP1Right() { return p1Right; }
-    public int getP2Left() { return p2Left; }
-    public int getP2Right() { return p2Right; }
+    public Rules getRules() { return rules; }
+    public int getHand(int player, int hand) { return hands[slot(player, hand)]; }
+    public int getPackedState() { return state; }
+    public long positionKey() { return positionKey; }
+    public int getP1Left() { return getHand(1, 0); }
+    public int getP1Right() { return getHand(1, 1); }
+    public int getP2Left() { return getHand(2, 0); }
+    public int getP2Right() { return getHand(2, 1); }
     public int getCurrentPlayer() { return currentPlayer; }
     public boolean isGameOver() { return gameOver; }
     public int getWinner() { return winner; }
-}
\ No newline at end of file
+}
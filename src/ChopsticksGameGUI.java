@@ -8,10 +8,11 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 public class ChopsticksGameGUI {
     private ChopsticksGame game;
-    private Minmax ai;
+    private AiService aiService;
     private boolean vsComputer;
     private int aiDifficulty;
 
@@ -21,11 +22,15 @@ public class ChopsticksGameGUI {
     private JLabel statusLabel;
     private JButton newGameButton;
 
+    private Timer thinkingTimer;
+    private CompletableFuture<String[]> pendingMove;
+    private int moveRequests;
+    private final Random moveRandom = new Random();
 
 
-    private Timer animationTimer;
+    private final AnimationClock clock = AnimationClock.shared();
+    private final SelectionPulse selectionPulse = new SelectionPulse();
     private float animationAlpha = 0.0f;
-    private boolean animationIncreasing = true;
 
 
     private static final Color BACKGROUND_COLOR = new Color(25, 35, 60);
@@ -39,39 +44,33 @@ public class ChopsticksGameGUI {
 
     public ChopsticksGameGUI() {
         game = new ChopsticksGame();
-        ai = new Minmax();
+        game.setUndoHistory(false);
+        aiService = new AiService();
         vsComputer = true;
         aiDifficulty = 2;
 
 
         createAndShowGUI();
-        startAnimationTimer();
     }
 
 
-    private void startAnimationTimer() {
-        animationTimer = new Timer(50, e -> {
-            if (animationIncreasing) {
-                animationAlpha += 0.05f;
-                if (animationAlpha >= 1.0f) {
-                    animationAlpha = 1.0f;
-                    animationIncreasing = false;
-                }
-            } else {
-                animationAlpha -= 0.05f;
-                if (animationAlpha <= 0.3f) {
-                    animationAlpha = 0.3f;
-                    animationIncreasing = true;
-                }
-            }
+    // Pulses the highlight of the selected hand while there is one, repainting only that hand;
+    // once the selection goes, repaints the hand that had it one last time and stops.
+    private class SelectionPulse implements AnimationClock.Animation {
+        private HandPanel highlighted;
 
-
-            p1LeftHand.repaint();
-            p1RightHand.repaint();
-            p2LeftHand.repaint();
-            p2RightHand.repaint();
-        });
-        animationTimer.start();
+        @Override
+        public boolean tick(long now) {
+            HandPanel selected = HandSelectionManager.hasSelectedHand()
+                    ? getHandPanelByName(HandSelectionManager.getSelectedHand()) : null;
+            if (highlighted != null && highlighted != selected) clock.markDirty(highlighted);
+            highlighted = selected;
+            if (selected == null) return false;
+
+            animationAlpha = AnimationClock.pulse(now);
+            clock.markDirty(selected);
+            return true;
+        }
     }
 
 
@@ -85,6 +84,14 @@ public class ChopsticksGameGUI {
 
         frame = new JFrame("Chopsticks Game");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                // A disposed window takes its AI worker thread with it.
+                cancelComputerMove();
+                aiService.shutdown();
+            }
+        });
         frame.setLayout(new BorderLayout(10, 10));
         frame.setSize(700, 600);
         frame.getContentPane().setBackground(BACKGROUND_COLOR);
@@ -159,6 +166,18 @@ public class ChopsticksGameGUI {
         });
 
 
+        JCheckBox splitsBox = new JCheckBox("Splits");
+        splitsBox.setForeground(TEXT_COLOR);
+        splitsBox.setBackground(PANEL_COLOR);
+        splitsBox.setFocusPainted(false);
+        splitsBox.setToolTipText("Select one of your hands, then click your other hand to move fingers over");
+        splitsBox.addActionListener(e -> {
+            game = new ChopsticksGame(splitsBox.isSelected() ? Rules.CLASSIC_WITH_SPLITS : Rules.CLASSIC);
+            game.setUndoHistory(false);
+            resetGame();
+        });
+
+
         newGameButton = new JButton("New Game");
         newGameButton.setBackground(ACCENT_COLOR);
         newGameButton.setForeground(Color.WHITE);
@@ -174,6 +193,7 @@ public class ChopsticksGameGUI {
         panel.add(pvcButton);
         panel.add(difficultyLabel);
         panel.add(difficultyComboBox);
+        panel.add(splitsBox);
         panel.add(Box.createHorizontalStrut(10));
         panel.add(newGameButton);
 
@@ -221,17 +241,18 @@ public class ChopsticksGameGUI {
 
 
     private void updateUI() {
-        p1LeftHand.updateHand(game.getP1Left());
-        p1RightHand.updateHand(game.getP1Right());
-        p2LeftHand.updateHand(game.getP2Left());
-        p2RightHand.updateHand(game.getP2Right());
+        GameSnapshot snapshot = game.snapshot();
+        p1LeftHand.updateHand(snapshot.getHand(1, ChopsticksGame.LEFT));
+        p1RightHand.updateHand(snapshot.getHand(1, ChopsticksGame.RIGHT));
+        p2LeftHand.updateHand(snapshot.getHand(2, ChopsticksGame.LEFT));
+        p2RightHand.updateHand(snapshot.getHand(2, ChopsticksGame.RIGHT));
 
 
-        if (game.isGameOver()) {
-            statusLabel.setText("Game Over! Player " + game.getWinner() + " wins!");
+        if (snapshot.isGameOver()) {
+            statusLabel.setText("Game Over! Player " + snapshot.getWinner() + " wins!");
             statusLabel.setForeground(BRIGHT_ACCENT);
         } else {
-            statusLabel.setText("Player " + game.getCurrentPlayer() + "'s turn");
+            statusLabel.setText("Player " + snapshot.getCurrentPlayer() + "'s turn");
             statusLabel.setForeground(TEXT_COLOR);
         }
     }
@@ -240,6 +261,7 @@ public class ChopsticksGameGUI {
 
 
     private void resetGame() {
+        cancelComputerMove();
         game.resetGame();
         updateUI();
     }
@@ -250,38 +272,74 @@ public class ChopsticksGameGUI {
 
         statusLabel.setText("Computer is thinking...");
 
-        Timer timer = new Timer(1000, e -> {
-            String[] move;
-            switch (aiDifficulty) {
-                case 1:
-                    move = ai.getRandomMove(game);
-                    break;
-                case 2:
-                    move = ai.getBestMove(game, 2);
-                    break;
-                case 3:
-                    move = ai.getBestMove(game, 4);
-                    break;
-                default:
-                    move = ai.getRandomMove(game);
-                    break;
-            }
-
-            if (move != null) {
-                game.makeMove(move[0], move[1]);
-                updateUI();
-                animateMove(move[0], move[1]);
-            } else {
-                // AI has no valid moves - player wins!
-                game.checkWinner(); // Force winner check
-                updateUI();
-                if (game.isGameOver() && game.getWinner() == 1) {
-                    showConfettiPopup();
+        thinkingTimer = new Timer(1000, e -> {
+            int requestNumber = ++moveRequests;
+            CompletableFuture<String[]> request = aiService.requestMove(game, aiDifficulty,
+                    message -> SwingUtilities.invokeLater(() -> {
+                        // Only the pending request may speak; a cancelled one's last words are dropped.
+                        if (pendingMove != null && moveRequests == requestNumber) statusLabel.setText(message);
+                    }));
+            pendingMove = request;
+            request.whenComplete((move, error) -> SwingUtilities.invokeLater(() -> {
+                // A newer game (or a cancelled request) has taken over; drop this answer.
+                if (pendingMove != request || request.isCancelled()) return;
+                pendingMove = null;
+                if (error != null) {
+                    // Don't leave the human waiting for a move that never comes: play any legal one.
+                    error.printStackTrace();
+                    applyComputerMove(randomComputerMove());
+                    String reason = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+                    statusLabel.setText("Computer search failed (" + reason + "), played a random move. "
+                            + statusLabel.getText());
+                    return;
                 }
-            }
+                applyComputerMove(move);
+            }));
         });
-        timer.setRepeats(false);
-        timer.start();
+        thinkingTimer.setRepeats(false);
+        thinkingTimer.start();
+    }
+
+    private void applyComputerMove(String[] move) {
+        if (move != null && move[0].equals("split")) {
+            game.split(Integer.parseInt(move[1]), Integer.parseInt(move[2]));
+            updateUI();
+            p2LeftHand.startMoveAnimation();
+            p2RightHand.startMoveAnimation();
+        } else if (move != null) {
+            game.makeMove(move[0], move[1]);
+            updateUI();
+            animateMove(move[0], move[1]);
+        } else {
+            // AI has no valid moves - player wins!
+            game.checkWinner(); // Force winner check
+            updateUI();
+            if (game.isGameOver() && game.getWinner() == 1) {
+                showConfettiPopup();
+            }
+        }
+    }
+
+    // A random legal move for the computer, named as applyComputerMove expects; null if it has none.
+    private String[] randomComputerMove() {
+        Rules rules = game.getRules();
+        int chosen = Rules.NONE;
+        int legal = 0;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (game.isValidMove(move) && moveRandom.nextInt(++legal) == 0) chosen = move;
+        }
+        return chosen == Rules.NONE ? null : rules.moveNames(game.getPackedState(), chosen);
+    }
+
+    private void cancelComputerMove() {
+        if (thinkingTimer != null) {
+            thinkingTimer.stop();
+            thinkingTimer = null;
+        }
+        if (pendingMove != null) {
+            pendingMove.cancel(true);
+            pendingMove = null;
+        }
     }
 
     private void showConfettiPopup() {
@@ -318,30 +376,43 @@ public class ChopsticksGameGUI {
         private final int NUM_CONFETTI = 100;
         private final Confetti[] confetti = new Confetti[NUM_CONFETTI];
         private final Random random = new Random();
-        private Timer animationTimer;
+        private final AnimationClock.Animation animation = now -> {
+            if (getWidth() == 0) return true;
+            for (Confetti c : confetti) {
+                c.update();
+            }
+            clock.markDirty(this);
+            return true;
+        };
 
         public ConfettiPanel() {
-            setPreferredSize(new Dimension(400, 150));
+            Dimension size = new Dimension(400, 150);
+            setPreferredSize(size);
             setBackground(new Color(0, 0, 0, 0)); // Transparent
 
+            // Not laid out yet, so scatter over the preferred size.
             for (int i = 0; i < NUM_CONFETTI; i++) {
                 confetti[i] = new Confetti(
-                        random.nextInt(getWidth()),
-                        random.nextInt(getHeight()),
+                        random.nextInt(size.width),
+                        random.nextInt(size.height),
                         random.nextInt(10) + 5,
                         random.nextInt(5) + 1,
                         new Color(random.nextFloat(), random.nextFloat(), random.nextFloat(), 0.7f)
                 );
             }
+        }
 
+        // Falls only while the popup is on screen.
+        @Override
+        public void addNotify() {
+            super.addNotify();
+            clock.add(animation);
+        }
 
-            animationTimer = new Timer(30, e -> {
-                for (Confetti c : confetti) {
-                    c.update();
-                }
-                repaint();
-            });
-            animationTimer.start();
+        @Override
+        public void removeNotify() {
+            clock.remove(animation);
+            super.removeNotify();
         }
 
         @Override
@@ -440,8 +511,9 @@ public class ChopsticksGameGUI {
         private String hand;
         private int fingerCount;
         private boolean isMoving = false;
-        private Timer moveAnimationTimer;
+        private long moveAnimationStart;
         private float moveAnimationAlpha = 0.0f;
+        private final AnimationClock.Animation moveAnimation = this::tickMoveAnimation;
 
 
         public HandPanel(int player, String hand) {
@@ -484,8 +556,9 @@ public class ChopsticksGameGUI {
 
 
         private boolean canInteract() {
-            if (game.isGameOver()) return false;
-            int currentPlayer = game.getCurrentPlayer();
+            GameSnapshot snapshot = game.snapshot();
+            if (snapshot.isGameOver()) return false;
+            int currentPlayer = snapshot.getCurrentPlayer();
             if (vsComputer && currentPlayer == 2) return false;
 
 
@@ -498,31 +571,29 @@ public class ChopsticksGameGUI {
 
 
         public void updateHand(int count) {
+            if (count == fingerCount) return;
             this.fingerCount = count;
             repaint();
         }
 
 
+        // A 300 ms flash; starting it again while it runs restarts it.
         public void startMoveAnimation() {
             isMoving = true;
             moveAnimationAlpha = 0.0f;
+            moveAnimationStart = System.nanoTime();
+            clock.add(moveAnimation);
+        }
 
 
-            if (moveAnimationTimer != null && moveAnimationTimer.isRunning()) {
-                moveAnimationTimer.stop();
+        private boolean tickMoveAnimation(long now) {
+            moveAnimationAlpha = (now - moveAnimationStart) / 300_000_000f;
+            if (moveAnimationAlpha >= 1.0f) {
+                moveAnimationAlpha = 0.0f;
+                isMoving = false;
             }
-
-
-            moveAnimationTimer = new Timer(30, e -> {
-                moveAnimationAlpha += 0.1f;
-                if (moveAnimationAlpha >= 1.0f) {
-                    moveAnimationAlpha = 0.0f;
-                    isMoving = false;
-                    ((Timer)e.getSource()).stop();
-                }
-                repaint();
-            });
-            moveAnimationTimer.start();
+            clock.markDirty(this);
+            return isMoving;
         }
 
 
@@ -561,15 +632,55 @@ public class ChopsticksGameGUI {
                         delayTimer.start();
                     }
                 }
+            } else if (game.getRules().hasSplits() && HandSelectionManager.hasSelectedHand()
+                    && !HandSelectionManager.getSelectedHand().equalsIgnoreCase(this.hand)) {
+                trySplit();
             } else {
                 if (this.fingerCount > 0) {
                     HandSelectionManager.setSelectedHand(this.hand);
                     repaintAllHands();
+                    clock.add(selectionPulse);
                 }
             }
         }
 
 
+        // Moves fingers from the selected hand onto this one, asking how many.
+        private void trySplit() {
+            HandPanel source = getHandPanelByName(HandSelectionManager.getSelectedHand());
+            if (source == null || source.fingerCount == 0) return;
+
+            Integer[] choices = new Integer[source.fingerCount];
+            for (int i = 0; i < choices.length; i++) {
+                choices[i] = i + 1;
+            }
+            Object choice = JOptionPane.showInputDialog(frame,
+                    "Move how many fingers to your " + hand.toLowerCase() + " hand?", "Split",
+                    JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+            if (choice == null) return;
+
+            int amount = (Integer) choice;
+            int newSource = source.fingerCount - amount;
+            int newTarget = this.fingerCount + amount;
+            boolean success = hand.equalsIgnoreCase("left")
+                    ? game.split(newTarget, newSource)
+                    : game.split(newSource, newTarget);
+            if (!success) {
+                statusLabel.setText("That split isn't allowed");
+                return;
+            }
+
+            HandSelectionManager.clearSelectedHand();
+            source.startMoveAnimation();
+            startMoveAnimation();
+            updateUI();
+
+            if (vsComputer && game.getCurrentPlayer() == 2 && !game.isGameOver()) {
+                makeComputerMove();
+            }
+        }
+
+
         private void repaintAllHands() {
             p1LeftHand.repaint();
             p1RightHand.repaint();
@@ -591,7 +702,7 @@ public class ChopsticksGameGUI {
 
 
 
-            if (player == game.getCurrentPlayer() &&
+            if (player == game.snapshot().getCurrentPlayer() &&
                     hand.equalsIgnoreCase(HandSelectionManager.getSelectedHand())) {
                 g2d.setColor(new Color(90, 180, 230, (int)(100 + 155 * animationAlpha)));
                 g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 15, 15);
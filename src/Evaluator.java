@@ -0,0 +1,23 @@
+/**
+ * Static score of a position at the search's depth limit, from the point of view of
+ * {@code aiPlayer}: higher is better for the AI. Minmax scores won and lost positions itself
+ * (100 and -100), so an evaluator should stay strictly between those.
+ *
+ * <p>Parallel searches call it from several threads at once.
+ */
+public interface Evaluator {
+    int evaluate(int state, int aiPlayer);
+
+    // Scores the first count states; implementations can override it with a faster loop.
+    default void evaluate(int[] states, int count, int aiPlayer, int[] scores) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = evaluate(states[i], aiPlayer);
+        }
+    }
+
+    // Tells evaluators apart in a MoveCache, also across runs: two evaluators that can score
+    // a position differently need different names.
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.Arrays;
+
+/**
+ * The classic evaluation: the AI's fingers minus everybody else's. The AI's count is weighted
+ * by the number of opponents, so with two players it is just AI minus opponent.
+ */
+public final class FingerCountEvaluator implements Evaluator {
+    private final Rules rules;
+
+    public FingerCountEvaluator(Rules rules) {
+        this.rules = rules;
+    }
+
+    @Override
+    public int evaluate(int state, int aiPlayer) {
+        int aiTotal = 0;
+        int opponentTotal = 0;
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                if (player == aiPlayer) {
+                    aiTotal += rules.hand(state, player, hand);
+                } else {
+                    opponentTotal += rules.hand(state, player, hand);
+                }
+            }
+        }
+        return aiTotal * (rules.getPlayers() - 1) - opponentTotal;
+    }
+
+    // Same sums one hand slot at a time across the whole batch: plain array loops, no calls.
+    @Override
+    public void evaluate(int[] states, int count, int aiPlayer, int[] scores) {
+        Arrays.fill(scores, 0, count, 0);
+        int opponents = rules.getPlayers() - 1;
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            int weight = player == aiPlayer ? opponents : -1;
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                for (int i = 0; i < count; i++) {
+                    scores[i] += weight * rules.hand(states[i], player, hand);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for GameServer: opens many connections at once and plays random moves on each,
+ * keeping its own copy of every game so it can check each reply against the rules. Reports
+ * the round-trip latency of every command as the clients saw it.
+ *
+ * <pre>
+ * java GameClient [--host=H] [--port=N] [--clients=N] [--games=N] [--depth=N] [--splits]
+ * </pre>
+ * Without --host it starts a server in the same JVM on a free port and tests that.
+ */
+public class GameClient {
+    // Random play against a searching AI can go round in circles; give up on a game after this.
+    private static final int MAX_PLIES = 200;
+
+    private final InetSocketAddress address;
+    private final Rules rules;
+    private final int depth;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public GameClient(InetSocketAddress address, Rules rules, int depth) {
+        this.address = address;
+        this.rules = rules;
+        this.depth = depth;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = null;
+        int port = GameServer.DEFAULT_PORT;
+        int clients = 1000;
+        int gamesPerClient = 10;
+        int depth = 4;
+        Rules rules = Rules.CLASSIC;
+        for (String arg : args) {
+            if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--games=")) {
+                gamesPerClient = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--depth=")) {
+                depth = Integer.parseInt(arg.substring("--depth=".length()));
+            } else if (arg.equals("--splits")) {
+                rules = Rules.CLASSIC_WITH_SPLITS;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        GameServer server = null;
+        if (host == null) {
+            server = new GameServer(rules, Runtime.getRuntime().availableProcessors());
+            GameServer local = server;
+            Thread serverThread = new Thread(() -> {
+                try {
+                    local.serve(new InetSocketAddress("localhost", 0));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "game-server");
+            serverThread.setDaemon(true);
+            serverThread.start();
+            while (server.getPort() < 0) {
+                Thread.sleep(10);
+            }
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        GameClient client = new GameClient(new InetSocketAddress(host, port), rules, depth);
+        long start = System.nanoTime();
+        client.run(clients, gamesPerClient);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d clients, %d games, %d errors in %.1f s (%.0f games/s)%n",
+                clients, client.games.sum(), client.errors.sum(), seconds, client.games.sum() / seconds);
+        System.out.println("Round trips: " + client.latency);
+        if (server != null) {
+            System.out.println("Server: " + server.stats());
+            server.stop();
+        }
+    }
+
+    public void run(int clients, int gamesPerClient) throws Exception {
+        ExecutorService executor = GameServer.newThreadPerTaskExecutor();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                long seed = i;
+                running.add(executor.submit(() -> {
+                    playGames(gamesPerClient, new Random(seed));
+                    return null;
+                }));
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void playGames(int count, Random random) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address);
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+            in.readLine(); // HELLO
+
+            ChopsticksGame game = new ChopsticksGame(rules);
+            for (int i = 0; i < count; i++) {
+                game.resetGame();
+                send(in, out, game, "NEW " + depth);
+                while (!game.isGameOver() && game.getHistorySize() < MAX_PLIES) {
+                    int move = randomMove(game, random);
+                    String[] names = rules.moveNames(game.getPackedState(), move);
+                    String command = names[0].equals("split") ? "SPLIT" : "MOVE " + names[0];
+                    for (int word = 1; word < names.length; word++) {
+                        command += " " + names[word];
+                    }
+                    game.makeMove(move);
+                    if (!send(in, out, game, command)) break;
+                }
+                games.increment();
+            }
+            send(in, out, game, "QUIT");
+        }
+    }
+
+    // Sends one command, plays the AI's moves from the reply on the local copy and checks that
+    // the final position matches. False if the server refused or the copies went apart.
+    private boolean send(BufferedReader in, BufferedWriter out, ChopsticksGame game, String command) throws IOException {
+        long start = System.nanoTime();
+        out.write(command);
+        out.write('\n');
+        out.flush();
+
+        String line;
+        while ((line = in.readLine()) != null && line.startsWith("AI ")) {
+            String[] move = line.substring(3).split(" ");
+            if (move[0].equals("split")) {
+                int[] hands = new int[move.length - 1];
+                for (int i = 0; i < hands.length; i++) {
+                    hands[i] = Integer.parseInt(move[i + 1]);
+                }
+                game.split(hands);
+            } else {
+                game.makeMove(move[0], move[1]);
+            }
+        }
+        latency.record(System.nanoTime() - start);
+
+        if (line == null) throw new IOException("Server closed the connection");
+        if (line.startsWith("OK") && (command.equals("QUIT") || line.equals(GameServer.position(game.snapshot())))) {
+            return true;
+        }
+        errors.increment();
+        return false;
+    }
+
+    private int randomMove(ChopsticksGame game, Random random) {
+        int[] legal = new int[rules.getMoveCount()];
+        int count = 0;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (game.isValidMove(move)) legal[count++] = move;
+        }
+        return legal[random.nextInt(count)];
+    }
+}
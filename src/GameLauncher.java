@@ -11,9 +11,6 @@ public class GameLauncher {
     private static final Color ACCENT_COLOR = new Color(65, 165, 245);
     private static final Color BRIGHT_ACCENT = new Color(100, 210, 255);
     private static final Color TEXT_COLOR = new Color(230, 240, 255);
-    private static Timer pulseTimer;
-    private static float pulseAlpha = 0.0f;
-    private static boolean pulseIncreasing = true;
 
     public static void main(String[] args) {
         try {
@@ -91,37 +88,19 @@ public class GameLauncher {
 
         pickFrame.add(wrapperPanel);
         pickFrame.setVisible(true);
-
-        startPulseAnimation();
-    }
-
-    private static void startPulseAnimation() {
-        pulseTimer = new Timer(50, e -> {
-            if (pulseIncreasing) {
-                pulseAlpha += 0.05f;
-                if (pulseAlpha >= 1.0f) {
-                    pulseAlpha = 1.0f;
-                    pulseIncreasing = false;
-                }
-            } else {
-                pulseAlpha -= 0.05f;
-                if (pulseAlpha <= 0.3f) {
-                    pulseAlpha = 0.3f;
-                    pulseIncreasing = true;
-                }
-            }
-
-
-            for (Window window : Window.getWindows()) {
-                window.repaint();
-            }
-        });
-        pulseTimer.start();
     }
 
 
     static class GameButton extends JButton {
         private boolean isHovering = false;
+        private float pulseAlpha = 0.3f;
+        // The glow pulses while the mouse is over the button; only this button is repainted.
+        private final AnimationClock.Animation glow = now -> {
+            if (!isHovering || !isShowing()) return false;
+            pulseAlpha = AnimationClock.pulse(now);
+            AnimationClock.shared().markDirty(this);
+            return true;
+        };
 
         public GameButton(String text) {
             super(text);
@@ -137,6 +116,7 @@ public class GameLauncher {
                     if (isEnabled()) {
                         isHovering = true;
                         repaint();
+                        AnimationClock.shared().add(glow);
                     }
                 }
 
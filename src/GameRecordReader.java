@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams the games of a file written by GameRecordWriter, one at a time through a 64K
+ * buffer, and replays them into a ChopsticksGame with move codes only: no strings, and no
+ * allocation per game once the move array has grown to the longest game.
+ *
+ * <pre>
+ * java GameRecordReader FILE
+ * </pre>
+ * replays every game in FILE and prints the results.
+ */
+public final class GameRecordReader implements Closeable {
+    private final Path file;
+    private final Rules rules;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(GameRecordWriter.BUFFER_SIZE);
+    private int[] moves = new int[64];
+    private int moveCount;
+
+    private GameRecordReader(Path file, Rules rules, FileChannel channel) {
+        this.file = file;
+        this.rules = rules;
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java GameRecordReader FILE");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        long games = 0;
+        long plies = 0;
+        long[] winners;
+        try (GameRecordReader reader = open(Paths.get(args[0]))) {
+            ChopsticksGame game = new ChopsticksGame(reader.getRules());
+            winners = new long[reader.getRules().getPlayers() + 1];
+            while (reader.next(game)) {
+                games++;
+                plies += reader.getMoveCount();
+                winners[game.isGameOver() ? game.getWinner() : 0]++;
+            }
+            System.out.printf("%s: %d games, %d moves%n", reader.getRules(), games, plies);
+        }
+        for (int player = 1; player < winners.length; player++) {
+            System.out.printf("Player %d won %d%n", player, winners[player]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Unfinished %d%nReplayed in %.2f s (%.0f games/s)%n", winners[0], seconds, games / seconds);
+    }
+
+    public static GameRecordReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Rules rules = readHeader(channel, file);
+            channel.position(GameRecordWriter.HEADER_SIZE);
+            return new GameRecordReader(file, rules, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next game's moves; false at the end of the file. The moves are then available
+     * through {@link #getMoveCount} and {@link #getMove} until the next call.
+     */
+    public boolean next() throws IOException {
+        if (!fill(1)) return false;
+
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28 || !fill(1)) throw new IOException("Corrupt game record in " + file);
+            int b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        if (length < 0 || length > GameRecordWriter.BUFFER_SIZE) {
+            throw new IOException("Corrupt game record in " + file);
+        }
+        if (!fill(length)) throw new IOException("Truncated game record in " + file);
+
+        if (moves.length < length) moves = Arrays.copyOf(moves, Math.max(length, moves.length * 2));
+        for (int i = 0; i < length; i++) {
+            moves[i] = buffer.get() & 0xFF;
+        }
+        moveCount = length;
+        return true;
+    }
+
+    /** Reads the next game and plays it on {@code game} from a reset; false at the end of the file. */
+    public boolean next(ChopsticksGame game) throws IOException {
+        if (!next()) return false;
+        replay(game);
+        return true;
+    }
+
+    // Plays the current game's moves on game, after resetting it.
+    public void replay(ChopsticksGame game) throws IOException {
+        if (!game.getRules().equals(rules)) {
+            throw new IllegalArgumentException("Game uses " + game.getRules() + ", records are for " + rules);
+        }
+        game.resetGame();
+        for (int i = 0; i < moveCount; i++) {
+            if (!game.makeMove(moves[i])) {
+                throw new IOException("Illegal move " + moves[i] + " at ply " + i + " in " + file);
+            }
+        }
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= moveCount) throw new IndexOutOfBoundsException(ply);
+        return moves[ply];
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Makes at least count bytes available; false if the file ends first.
+    private boolean fill(int count) throws IOException {
+        if (buffer.remaining() >= count) return true;
+        buffer.compact();
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    static Rules readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a game record file: " + file);
+            }
+        }
+        header.flip();
+        if (header.getInt(0) != GameRecordWriter.MAGIC || header.getInt(4) != GameRecordWriter.VERSION) {
+            throw new IOException("Not a version " + GameRecordWriter.VERSION + " game record file: " + file);
+        }
+        int flags = header.getInt(20);
+        return new Rules(header.getInt(8), header.getInt(12), header.getInt(16),
+                (flags & GameRecordWriter.ROLLOVER_FLAG) != 0, (flags & GameRecordWriter.SPLITS_FLAG) != 0);
+    }
+}
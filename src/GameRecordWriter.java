@@ -0,0 +1,129 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends games to a binary game record file: a 32-byte header naming the rules variant, then
+ * one record per game, each the number of moves (unsigned LEB128, one byte up to 127 moves)
+ * followed by one byte per move, the Rules move code. Every game starts from the usual start
+ * position, so the moves are all a GameRecordReader needs to replay it.
+ *
+ * <p>Header: magic, version, fingers, hands, players, flags and two reserved ints, big-endian
+ * like the Tablebase header. Games go through a 64K buffer, so close (or flush) the writer to
+ * get the last of them onto disk. writeGame may be called from several threads.
+ */
+public final class GameRecordWriter implements Closeable {
+    static final int MAGIC = 0x43484752; // "CHGR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int ROLLOVER_FLAG = 1;
+    static final int SPLITS_FLAG = 2;
+    static final int BUFFER_SIZE = 1 << 16;
+    // Move codes have to fit in one byte.
+    static final int MAX_MOVE_CODES = 256;
+
+    private final Rules rules;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long games;
+
+    private GameRecordWriter(Rules rules, FileChannel channel) {
+        this.rules = rules;
+        this.channel = channel;
+    }
+
+    /** Opens {@code file} for appending, writing the header if the file is new or empty. */
+    public static GameRecordWriter open(Path file, Rules rules) throws IOException {
+        if (rules.getMoveCount() > MAX_MOVE_CODES) {
+            throw new IllegalArgumentException("Move codes of " + rules + " don't fit in a byte");
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = header(rules);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } else if (!rules.equals(GameRecordReader.readHeader(channel, file))) {
+                throw new IOException("Game records in " + file + " are for another variant than " + rules);
+            }
+            channel.position(channel.size());
+            return new GameRecordWriter(rules, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Appends one game: the first {@code count} move codes, played from the start position. */
+    public synchronized void writeGame(int[] moves, int count) throws IOException {
+        // Checked before anything goes into the buffer: half a record would corrupt every one after it.
+        for (int i = 0; i < count; i++) {
+            if (moves[i] < 0 || moves[i] >= rules.getMoveCount()) {
+                throw new IllegalArgumentException("Not a move code: " + moves[i]);
+            }
+        }
+        if (buffer.remaining() < 5 + count) {
+            flush();
+            if (buffer.remaining() < 5 + count) {
+                throw new IllegalArgumentException("Game too long to record: " + count + " moves");
+            }
+        }
+
+        for (int length = count; ; length >>>= 7) {
+            if (length < 0x80) {
+                buffer.put((byte) length);
+                break;
+            }
+            buffer.put((byte) (length & 0x7F | 0x80));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) moves[i]);
+        }
+        games++;
+    }
+
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Games written through this writer (not counting those already in the file).
+    public synchronized long getGameCount() {
+        return games;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer header(Rules rules) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(rules.getFingers())
+                .putInt(rules.getHands())
+                .putInt(rules.getPlayers())
+                .putInt((rules.isRollover() ? ROLLOVER_FLAG : 0) | (rules.hasSplits() ? SPLITS_FLAG : 0))
+                .putInt(0)
+                .putInt(0);
+        return header.flip();
+    }
+}
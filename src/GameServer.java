@@ -0,0 +1,302 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless game server: every TCP connection is one player with one game against the AI,
+ * served by its own thread. That is a virtual thread only when the server runs on JDK 21 or
+ * later; the build targets Java 17, and on a Java 17 runtime every connection gets a platform
+ * thread from a cached pool instead (the startup line says which). A session is just the
+ * game and two small buffers; the searching is done by a fixed pool of Minmax engines that
+ * share one MoveCache.
+ *
+ * <p>One command per line; every command gets exactly one "OK position" or "ERR message"
+ * line back, and when the AI moves an "AI move" line comes first.
+ * <pre>
+ * NEW [depth]        start over (the client moves first, the AI searches depth plies, default 4)
+ * MOVE own target    tap: MOVE left right hits the AI's right hand with the client's left
+ * SPLIT n n...       share the client's fingers out again (variants with splits only)
+ * STATE              the position, see below
+ * STATS              sessions, moves and command latency percentiles for the whole server
+ * QUIT
+ * </pre>
+ * A position is every hand player by player, then "turn P" or "winner P", e.g.
+ * "OK 1 1 2 1 turn 1". The client is player 1.
+ *
+ * <pre>
+ * java GameServer [--port=N] [--engines=N] [--splits] [--book=FILE]
+ * </pre>
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 7171;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int MAX_DEPTH = 12;
+    private static final int MOVE_CACHE_SIZE = 1 << 18;
+    // Commands are a few bytes; the JDK's 8K default per stream would dominate a session.
+    private static final int BUFFER_SIZE = 256;
+    private static final int HUMAN = 1;
+    private static final Method VIRTUAL_THREADS = findVirtualThreads();
+
+    private final Rules rules;
+    private final BlockingQueue<Minmax> engines;
+    private final MoveCache moveCache = new MoveCache(MOVE_CACHE_SIZE);
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private volatile ServerSocket serverSocket;
+
+    public GameServer(Rules rules, int engineCount) {
+        this.rules = rules;
+        this.engines = new ArrayBlockingQueue<>(engineCount);
+        for (int i = 0; i < engineCount; i++) {
+            Minmax ai = new Minmax(rules);
+            ai.setMoveCache(moveCache);
+            engines.add(ai);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int engineCount = Runtime.getRuntime().availableProcessors();
+        Rules rules = Rules.CLASSIC;
+        Path book = null;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--engines=")) {
+                engineCount = Integer.parseInt(arg.substring("--engines=".length()));
+            } else if (arg.equals("--splits")) {
+                rules = Rules.CLASSIC_WITH_SPLITS;
+            } else if (arg.startsWith("--book=")) {
+                book = Paths.get(arg.substring("--book=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        GameServer server = new GameServer(rules, engineCount);
+        server.setOpeningBook(book);
+        System.out.printf("%s, %d engines, %s, listening on port %d%n", rules, engineCount,
+                VIRTUAL_THREADS != null ? "a virtual thread per connection"
+                        : "a platform thread per connection (virtual threads need JDK 21)", port);
+        server.serve(new InetSocketAddress(port));
+    }
+
+    // Every engine answers the book's positions without searching; see Minmax.setOpeningBook.
+    public void setOpeningBook(Path file) {
+        for (Minmax ai : engines) {
+            ai.setOpeningBook(file);
+        }
+    }
+
+    /** Accepts connections until {@link #stop} is called; blocks the calling thread. */
+    public void serve(InetSocketAddress address) throws IOException {
+        ExecutorService executor = newThreadPerTaskExecutor();
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(address, 1024);
+            serverSocket = socket;
+            while (!socket.isClosed()) {
+                Socket connection;
+                try {
+                    connection = socket.accept();
+                } catch (SocketException e) {
+                    break; // closed by stop()
+                }
+                executor.execute(() -> runSession(connection));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void stop() throws IOException {
+        ServerSocket socket = serverSocket;
+        if (socket != null) socket.close();
+    }
+
+    // Port actually bound, for servers started on port 0; -1 before serve has bound it.
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : -1;
+    }
+
+    public String stats() {
+        return String.format("sessions %d (%d open), moves %d, cache hit rate %.1f%%; commands: %s; searches: %s",
+                sessions.sum(), activeSessions.get(), moves.sum(), 100 * moveCache.getHitRate(),
+                commandLatency, searchLatency);
+    }
+
+    private void runSession(Socket connection) {
+        sessions.increment();
+        activeSessions.incrementAndGet();
+        try (Socket socket = connection;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), BUFFER_SIZE);
+             BufferedWriter out = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            socket.setTcpNoDelay(true);
+            Session session = new Session(out);
+            out.write("HELLO " + rules + "\n");
+            out.flush();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                long start = System.nanoTime();
+                boolean open = session.handle(line.trim());
+                out.flush();
+                commandLatency.record(System.nanoTime() - start);
+                if (!open) break;
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to clean up beyond the socket.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    // The OK line for a position, as described above.
+    static String position(GameSnapshot snapshot) {
+        Rules rules = snapshot.getRules();
+        StringBuilder sb = new StringBuilder("OK");
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                sb.append(' ').append(snapshot.getHand(player, hand));
+            }
+        }
+        return sb.append(snapshot.isGameOver() ? " winner " + snapshot.getWinner() : " turn " + snapshot.getCurrentPlayer())
+                .toString();
+    }
+
+    // A virtual thread per task on JDK 21 and later, otherwise a cached pool of platform threads.
+    static ExecutorService newThreadPerTaskExecutor() {
+        if (VIRTUAL_THREADS == null) return Executors.newCachedThreadPool();
+        try {
+            return (ExecutorService) VIRTUAL_THREADS.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't start virtual threads", e);
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor, looked up at run time since the build targets
+    // Java 17; null on older runtimes.
+    private static Method findVirtualThreads() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private final class Session {
+        private final BufferedWriter out;
+        private final ChopsticksGame game = new ChopsticksGame(rules);
+        private int depth = DEFAULT_DEPTH;
+
+        Session(BufferedWriter out) {
+            this.out = out;
+            game.setUndoHistory(false);
+        }
+
+        // False once the client has said QUIT.
+        boolean handle(String line) throws IOException, InterruptedException {
+            String[] words = line.split("\\s+");
+            switch (words[0].toUpperCase()) {
+                case "NEW":
+                    if (words.length > 1) {
+                        int newDepth = parse(words[1]);
+                        if (newDepth < 1 || newDepth > MAX_DEPTH) {
+                            return error("Depth must be 1 to " + MAX_DEPTH);
+                        }
+                        depth = newDepth;
+                    }
+                    game.resetGame();
+                    return ok();
+                case "MOVE":
+                    if (words.length != 3) return error("Usage: MOVE own target");
+                    return play(game.getCurrentPlayer() == HUMAN && game.makeMove(words[1], words[2]));
+                case "SPLIT":
+                    int[] hands = new int[words.length - 1];
+                    for (int i = 0; i < hands.length; i++) {
+                        hands[i] = parse(words[i + 1]);
+                    }
+                    return play(game.getCurrentPlayer() == HUMAN && game.split(hands));
+                case "STATE":
+                    return ok();
+                case "STATS":
+                    out.write("OK " + stats() + "\n");
+                    return true;
+                case "QUIT":
+                    out.write("OK bye\n");
+                    return false;
+                default:
+                    return error("Unknown command: " + words[0]);
+            }
+        }
+
+        private boolean play(boolean played) throws IOException, InterruptedException {
+            if (!played) return error("Illegal move");
+            moves.increment();
+
+            while (!game.isGameOver() && game.getCurrentPlayer() != HUMAN) {
+                int move = search();
+                if (move == Rules.NONE) break;
+                String[] names = rules.moveNames(game.getPackedState(), move);
+                game.makeMove(move);
+                moves.increment();
+                out.write("AI " + String.join(" ", names) + "\n");
+            }
+            return ok();
+        }
+
+        // Borrows an engine for one search; sessions queue here when every engine is busy.
+        private int search() throws InterruptedException {
+            Minmax ai = engines.take();
+            long start = System.nanoTime();
+            try {
+                return ai.getBestMoveCode(game, depth);
+            } finally {
+                searchLatency.record(System.nanoTime() - start);
+                engines.put(ai);
+            }
+        }
+
+        private boolean ok() throws IOException {
+            out.write(position(game.snapshot()) + "\n");
+            return true;
+        }
+
+        private boolean error(String message) throws IOException {
+            out.write("ERR " + message + "\n");
+            return true;
+        }
+
+        private int parse(String number) {
+            try {
+                return Integer.parseInt(number);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * One moment of a ChopsticksGame that never changes: the packed position, whether the game is
+ * over and who won. {@link ChopsticksGame#snapshot()} hands out the latest one, so painters,
+ * loggers and AI threads can read a consistent board without locks while the game goes on.
+ */
+public final class GameSnapshot {
+    // Packed into one long by the game: state in the low 32 bits, the winner (0 while the game
+    // runs; the state space limit keeps players below 32) in the next 5, the sequence above.
+    private static final int WINNER_SHIFT = 32;
+    private static final int SEQUENCE_SHIFT = 37;
+
+    private final Rules rules;
+    private final int state;
+    private final int winner;
+    private final long sequence;
+
+    GameSnapshot(Rules rules, long packed) {
+        this.rules = rules;
+        this.state = (int) packed;
+        this.winner = (int) (packed >>> WINNER_SHIFT) & 0x1F;
+        this.sequence = packed >>> SEQUENCE_SHIFT;
+    }
+
+    static long pack(int state, int winner, long sequence) {
+        return (sequence << SEQUENCE_SHIFT) | ((long) winner << WINNER_SHIFT) | (state & 0xFFFFFFFFL);
+    }
+
+    public Rules getRules() { return rules; }
+    public int getPackedState() { return state; }
+    public int getHand(int player, int hand) { return rules.hand(state, player, hand); }
+    public int getCurrentPlayer() { return rules.currentPlayer(state); }
+    // A finished game always has a winner.
+    public boolean isGameOver() { return winner != 0; }
+    public int getWinner() { return winner; }
+    public long positionKey() { return rules.positionKey(state); }
+    // Goes up by one with every change to the game, undo and reset included, so an observer
+    // can tell whether anything happened since the snapshot it saw last. It wraps around after
+    // 2^27 changes, so compare sequences for equality only.
+    public long getSequence() { return sequence; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int player = 1; player <= rules.getPlayers(); player++) {
+            sb.append(player == 1 ? "" : " | ").append('P').append(player);
+            for (int hand = 0; hand < rules.getHands(); hand++) {
+                sb.append(hand == 0 ? " " : ",").append(getHand(player, hand));
+            }
+        }
+        sb.append(isGameOver() ? ", winner " + winner : ", player " + getCurrentPlayer() + " to move");
+        return sb.toString();
+    }
+}
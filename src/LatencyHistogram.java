@@ -0,0 +1,83 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe latency counts in powers-of-two buckets: bucket b counts samples that took less
+ * than 2^b nanoseconds. Percentiles come out as the upper bound of their bucket, i.e. within a
+ * factor of two. Tournament, GameServer and GameClient all report their latencies with it.
+ */
+public final class LatencyHistogram {
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void record(long nanos) {
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    // Adds other's samples to this histogram.
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long samples = other.buckets.get(bucket);
+            if (samples != 0) buckets.addAndGet(bucket, samples);
+        }
+        count.add(other.count.sum());
+        totalNanos.add(other.totalNanos.sum());
+    }
+
+    // Samples in the given bucket, those that took less than bucketLimit(bucket).
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    public static long bucketLimit(int bucket) {
+        return 1L << bucket;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanNanos() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : totalNanos.sum() / samples;
+    }
+
+    // Upper bound of the bucket holding the given fraction of samples; 0 without samples.
+    public long percentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long samples = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = buckets.get(bucket);
+            samples += snapshot[bucket];
+        }
+        if (samples == 0) return 0;
+
+        long wanted = (long) Math.ceil(samples * fraction);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= wanted) return 1L << bucket;
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d samples, mean %s, p50 < %s, p99 < %s, p99.9 < %s, max < %s", getCount(),
+                format(getMeanNanos()), format(percentile(0.50)), format(percentile(0.99)),
+                format(percentile(0.999)), format(percentile(1.0)));
+    }
+
+    public static String format(long nanos) {
+        if (nanos < 1_000) return nanos + " ns";
+        if (nanos < 1_000_000) return String.format("%.1f us", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.1f s", nanos / 1e9);
+    }
+}
@@ -0,0 +1,424 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monte Carlo tree search (UCT): instead of looking at every move to a fixed depth, it plays
+ * random games from the current position and grows a tree towards the moves that win most.
+ * Strength goes up smoothly with the playouts it is given (setIterations / setTimeBudget),
+ * which suits the big variants where full-width minimax can't see far.
+ *
+ * <p>The tree lives in flat arrays (an arena) rather than node objects, and the children of
+ * a node sit next to each other. After a move the part of the tree under the new position is
+ * copied to the front of a second arena and kept, so the next search starts from what the
+ * previous one learned. Several threads can grow the same tree; a thread walking down a node
+ * counts a provisional loss there (virtual loss) so the others spread out over other lines.
+ *
+ * <p>Like Minmax, one instance serves one caller at a time.
+ */
+public class Mcts implements AiStrategy {
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+    public static final int DEFAULT_ITERATIONS = 10_000;
+    // Playouts still running after this many plies (tree path and random game together)
+    // count as draws. This also keeps forced cycles from growing the tree into a long chain.
+    private static final int MAX_PLAYOUT_PLIES = 200;
+    // UCT exploration weight, for results between -1 and 1.
+    private static final double EXPLORATION = 1.4;
+
+    // firstChild values for nodes without children yet.
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    // Out of arena space: stays a leaf until the tree is copied into a fresh arena.
+    private static final int FULL = -3;
+
+    private static final VarHandle INT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Rules rules;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private Arena arena;
+    private Arena spare;
+    private int root = -1;
+    private int iterations = DEFAULT_ITERATIONS;
+    private long budgetMillis;
+    private long playouts;
+    private int lastIterations;
+    private int lastReused;
+    private long seed = System.nanoTime();
+
+    public Mcts(Rules rules) {
+        this(rules, ForkJoinPool.commonPool(), 1, DEFAULT_CAPACITY);
+    }
+
+    // threads - 1 helpers run on the pool; the calling thread always searches too.
+    public Mcts(Rules rules, ForkJoinPool pool, int threads, int capacity) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be positive: " + threads);
+        // Room for at least a root and all its children.
+        if (capacity < 1 + rules.getMoveCount()) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is too small for " + rules);
+        }
+        this.rules = rules;
+        this.pool = pool;
+        this.threads = threads;
+        this.arena = new Arena(capacity, rules.getMoveCount());
+        this.spare = new Arena(capacity, rules.getMoveCount());
+    }
+
+    // Playouts per move; 0 for no limit (then the time budget has to be set).
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    // Milliseconds per move; 0 for no limit. With both budgets set, whichever runs out first.
+    public void setTimeBudget(long millis) {
+        this.budgetMillis = millis;
+    }
+
+    /** Grows the tree under the current position within the budget and plays its most visited move. */
+    @Override
+    public int chooseMove(ChopsticksGame game) {
+        if (!game.getRules().equals(rules)) {
+            throw new IllegalArgumentException("Game uses " + game.getRules() + ", AI was built for " + rules);
+        }
+        if (game.isGameOver()) return Rules.NONE;
+        if (iterations <= 0 && budgetMillis <= 0) {
+            throw new IllegalStateException("Set an iteration or time budget first");
+        }
+
+        moveRoot(game.getPackedState());
+        // moveRoot left room for the root's children, so the search always has moves to count.
+        expand(arena, root);
+        Budget budget = new Budget(iterations, budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000L : 0);
+
+        ForkJoinTask<?>[] helpers = new ForkJoinTask<?>[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            Worker worker = new Worker(seed++);
+            helpers[i] = pool.submit(() -> worker.run(budget));
+        }
+        int done = new Worker(seed++).run(budget);
+        try {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            for (ForkJoinTask<?> helper : helpers) {
+                done += (Integer) helper.get();
+            }
+        } catch (InterruptedException e) {
+            // Let the helpers finish their current playout, so the tree is whole for next time.
+            budget.stopped = true;
+            for (ForkJoinTask<?> helper : helpers) helper.quietlyJoin();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search worker failed", e.getCause());
+        }
+        lastIterations = done;
+        playouts += done;
+        int move = bestMove();
+        return move != Rules.NONE ? move : firstLegalMove(game.getPackedState());
+    }
+
+    @Override
+    public long getNodeCount() {
+        return playouts;
+    }
+
+    // Playouts the last chooseMove ran, and how many tree nodes it inherited from the one before.
+    public int getLastIterations() { return lastIterations; }
+    public int getLastReusedNodes() { return lastReused; }
+
+    public int getTreeSize() {
+        return arena.size.get();
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    // Forgets the tree, so the next search starts from nothing.
+    public void clear() {
+        root = -1;
+    }
+
+    // UCT: best mean result plus an exploration bonus for rarely tried children.
+    private int select(Arena a, int node, int first) {
+        int count = a.childCount[node];
+        double logParent = Math.log(Math.max(1, (int) INT.getOpaque(a.visits, node)));
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++) {
+            int visits = (int) INT.getOpaque(a.visits, child);
+            if (visits == 0) return child;
+            double score = (double) (int) INT.getOpaque(a.values, child) / visits
+                    + EXPLORATION * Math.sqrt(logParent / visits);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private static void addVirtualLoss(Arena a, int node) {
+        INT.getAndAdd(a.visits, node, 1);
+        INT.getAndAdd(a.values, node, -1);
+    }
+
+    // False if another thread got there first or the arena is full.
+    private boolean expand(Arena a, int node) {
+        if (!INT.compareAndSet(a.firstChild, node, UNEXPANDED, EXPANDING)) return false;
+
+        int state = a.states[node];
+        int count = 0;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (rules.successor(state, move) != Rules.NONE) count++;
+        }
+        // Reserve the block only if it fits, so a failed expansion doesn't use up capacity.
+        int block;
+        do {
+            block = a.size.get();
+            if (block + count > a.capacity) {
+                INT.setRelease(a.firstChild, node, FULL);
+                return false;
+            }
+        } while (!a.size.compareAndSet(block, block + count));
+
+        int child = block;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            int nextState = rules.successor(state, move);
+            if (nextState == Rules.NONE) continue;
+            a.init(child++, nextState, node, move);
+        }
+        a.childCount[node] = (short) count;
+        // Publishes the children written above to threads that read firstChild with getAcquire.
+        INT.setRelease(a.firstChild, node, block);
+        return true;
+    }
+
+    // Most visited root move (the lowest move code on ties).
+    private int bestMove() {
+        Arena a = arena;
+        int first = a.firstChild[root];
+        if (first < 0 || a.childCount[root] == 0) return Rules.NONE;
+        int best = first;
+        for (int child = first + 1; child < first + a.childCount[root]; child++) {
+            if (a.visits[child] > a.visits[best]) best = child;
+        }
+        return a.moves[best];
+    }
+
+    // Only reached if the tree couldn't give the root any children.
+    private int firstLegalMove(int state) {
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (rules.successor(state, move) != Rules.NONE) return move;
+        }
+        return Rules.NONE;
+    }
+
+    // Finds state a couple of plies below the old root (our move and the replies to it) and
+    // keeps its subtree; anything else starts a new tree. A kept tree with no room left for
+    // the root's children is dropped as well.
+    private void moveRoot(int state) {
+        lastReused = 0;
+        if (root >= 0) {
+            int found = find(root, state, rules.getPlayers());
+            if (found >= 0) {
+                root = compact(found);
+                if (arena.firstChild[root] >= 0 || arena.size.get() + rules.getMoveCount() <= arena.capacity) {
+                    lastReused = arena.size.get();
+                    return;
+                }
+            }
+        }
+        arena.size.set(1);
+        arena.init(0, state, -1, Rules.NONE);
+        root = 0;
+    }
+
+    private int find(int node, int state, int plies) {
+        if (arena.states[node] == state) return node;
+        if (plies == 0 || arena.firstChild[node] < 0) return -1;
+        for (int child = arena.firstChild[node]; child < arena.firstChild[node] + arena.childCount[node]; child++) {
+            int found = find(child, state, plies - 1);
+            if (found >= 0) return found;
+        }
+        return -1;
+    }
+
+    // Copies the subtree under node to the front of the spare arena, breadth first so every
+    // node's children stay together, and makes that the live arena. Returns the new root (0).
+    private int compact(int node) {
+        Arena from = arena;
+        Arena to = spare;
+        // Breadth-first queue: new node i is a copy of old node origin[i].
+        int[] origin = to.scratch;
+        origin[0] = node;
+        to.copy(0, from, node, -1);
+        int size = 1;
+        for (int i = 0; i < size; i++) {
+            int old = origin[i];
+            int first = from.firstChild[old];
+            if (first < 0) {
+                to.firstChild[i] = UNEXPANDED;
+                continue;
+            }
+            to.firstChild[i] = size;
+            for (int child = first; child < first + from.childCount[old]; child++) {
+                origin[size] = child;
+                to.copy(size++, from, child, i);
+            }
+        }
+        to.size.set(size);
+        spare = from;
+        arena = to;
+        return 0;
+    }
+
+    // What one chooseMove may spend, shared by all its threads.
+    private static final class Budget {
+        final int iterations;
+        final long deadline;
+        final AtomicInteger claimed = new AtomicInteger();
+        volatile boolean stopped;
+
+        Budget(int iterations, long deadline) {
+            this.iterations = iterations;
+            this.deadline = deadline;
+        }
+
+        // Checked before every playout; the clock only every so often.
+        boolean allows(int done) {
+            if (stopped) return false;
+            if (iterations > 0 && claimed.getAndIncrement() >= iterations) return false;
+            return deadline == 0 || (done & 63) != 0 || System.nanoTime() - deadline < 0;
+        }
+    }
+
+    // One search thread's scratch space.
+    private final class Worker {
+        private final SplittableRandom random;
+        private final int[] legal = new int[rules.getMoveCount()];
+        private int[] path = new int[64];
+
+        Worker(long seed) {
+            random = new SplittableRandom(seed);
+        }
+
+        // Runs playouts until the budget is used up; returns how many this thread ran.
+        int run(Budget budget) {
+            int done = 0;
+            while (budget.allows(done)) {
+                if ((done & 1023) == 0 && Thread.currentThread().isInterrupted()) break;
+                playout(arena);
+                done++;
+            }
+            return done;
+        }
+
+        private void playout(Arena a) {
+            // Selection: walk down expanded nodes, marking each step with a virtual loss.
+            int node = root;
+            int length = 0;
+            int first;
+            while ((first = (int) INT.getAcquire(a.firstChild, node)) >= 0 && a.childCount[node] > 0
+                    && length < MAX_PLAYOUT_PLIES) {
+                node = select(a, node, first);
+                length = push(length, node);
+                addVirtualLoss(a, node);
+            }
+
+            // Expansion: the first thread to reach a leaf gives it its children and goes on into one.
+            int state = a.states[node];
+            if (rules.winner(state) == 0 && first == UNEXPANDED && length < MAX_PLAYOUT_PLIES
+                    && expand(a, node) && a.childCount[node] > 0) {
+                node = a.firstChild[node] + random.nextInt(a.childCount[node]);
+                length = push(length, node);
+                addVirtualLoss(a, node);
+                state = a.states[node];
+            }
+
+            // Simulation and backpropagation: each node is scored for the player who moved into it.
+            int winner = rollout(state, MAX_PLAYOUT_PLIES - length);
+            INT.getAndAdd(a.visits, root, 1);
+            for (int i = length - 1; i >= 0; i--) {
+                int mover = rules.currentPlayer(a.states[a.parents[path[i]]]);
+                int reward = winner == 0 ? 0 : winner == mover ? 1 : -1;
+                // +1 takes the virtual loss back.
+                INT.getAndAdd(a.values, path[i], reward + 1);
+            }
+        }
+
+        private int push(int length, int node) {
+            if (length == path.length) path = Arrays.copyOf(path, length * 2);
+            path[length] = node;
+            return length + 1;
+        }
+
+        // Plays random moves to the end, or for at most plies moves; returns the winner, or 0 for a draw.
+        private int rollout(int state, int plies) {
+            for (int ply = 0; ply < plies; ply++) {
+                int winner = rules.winner(state);
+                if (winner != 0) return winner;
+                int count = 0;
+                for (int move = 0; move < legal.length; move++) {
+                    if (rules.successor(state, move) != Rules.NONE) legal[count++] = move;
+                }
+                if (count == 0) return 0;
+                state = rules.successor(state, legal[random.nextInt(count)]);
+            }
+            return rules.winner(state);
+        }
+    }
+
+    private static final class Arena {
+        final int capacity;
+        final int[] states;
+        final int[] parents;
+        final int[] firstChild;
+        final short[] childCount;
+        final short[] moves;
+        // Playouts through each node (virtual losses included while they run) and the summed
+        // results for the player who moved into it: +1 win, 0 draw, -1 loss.
+        final int[] visits;
+        final int[] values;
+        final int[] scratch;
+        final AtomicInteger size = new AtomicInteger();
+
+        Arena(int capacity, int moveCount) {
+            if (moveCount > Short.MAX_VALUE) throw new IllegalArgumentException("Too many move codes: " + moveCount);
+            this.capacity = capacity;
+            states = new int[capacity];
+            parents = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new short[capacity];
+            moves = new short[capacity];
+            visits = new int[capacity];
+            values = new int[capacity];
+            scratch = new int[capacity];
+        }
+
+        void init(int node, int state, int parent, int move) {
+            states[node] = state;
+            parents[node] = parent;
+            firstChild[node] = UNEXPANDED;
+            childCount[node] = 0;
+            moves[node] = (short) move;
+            visits[node] = 0;
+            values[node] = 0;
+        }
+
+        // Everything but firstChild, which compact fills in.
+        void copy(int node, Arena from, int old, int parent) {
+            states[node] = from.states[old];
+            parents[node] = parent;
+            childCount[node] = from.firstChild[old] >= 0 ? from.childCount[old] : 0;
+            moves[node] = from.moves[old];
+            visits[node] = from.visits[old];
+            values[node] = from.values[old];
+        }
+    }
+}
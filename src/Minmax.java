@@ -1,16 +1,114 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class Minmax {
     private Random random = new Random();
-    private final int MAX_FINGERS = 5;
-    private final int WIN_SCORE = 100;
-    private final int LOSE_SCORE = -100;
+    // A win (loss) n plies from the root scores WIN_SCORE - n (LOSE_SCORE + n), so the search
+    // goes for the fastest win and puts off a loss. Well clear of any evaluator score, and
+    // within the +-511 the transposition table can hold.
+    private final int WIN_SCORE = 500;
+    private final int LOSE_SCORE = -500;
+    private final int DRAW_SCORE = 0;
+    private final int MAX_DEPTH = 64;
+    // Below this depth the subtrees are too small for sorting the moves to pay off.
+    private final int MIN_ORDERING_DEPTH = 3;
+    // Below this depth getBestMoveParallel searches a node's moves one after another: the
+    // subtrees are too small to pay for a task each. At least MIN_ORDERING_DEPTH, so the
+    // moves to split are already in moves[ply].
+    private final int MIN_SPLIT_DEPTH = 6;
+    // A parallel brother that stopped because another one cut off first.
+    private final int ABORTED_SCORE = Integer.MIN_VALUE;
+
+    private final Rules rules;
+    // One table per player the AI can be, shared by every search on this instance
+    // (including the parallel workers).
+    private final TranspositionTable[] tables;
+    private final Search search;
+    private final ForkJoinPool pool;
+    private final Evaluator evaluator;
+    private final LongAdder parallelNodes = new LongAdder();
+    private final LongAdder parallelCutoffs = new LongAdder();
+    private final LongAdder parallelFirstMoveCutoffs = new LongAdder();
+    // Brother searches of getBestMoveParallel kept for the next split: setting up a new one
+    // costs more than searching a small subtree.
+    private final ConcurrentLinkedQueue<Search> spareSearches = new ConcurrentLinkedQueue<>();
+    private volatile Tablebase tablebase;
+    private volatile MoveCache moveCache;
+    // The book file is only opened when a search first needs it, see bookMove. Both are only
+    // written under the lock.
+    private volatile Path openingBookFile;
+    private volatile OpeningBook openingBook;
+    private volatile Consumer<SearchStats> statsListener;
+
+    public Minmax() {
+        this(Rules.CLASSIC, ForkJoinPool.commonPool());
+    }
+
+    public Minmax(Rules rules) {
+        this(rules, ForkJoinPool.commonPool());
+    }
+
+    public Minmax(ForkJoinPool pool) {
+        this(Rules.CLASSIC, pool);
+    }
+
+    public Minmax(Rules rules, ForkJoinPool pool) {
+        this(rules, pool, new FingerCountEvaluator(rules));
+    }
+
+    public Minmax(Rules rules, Evaluator evaluator) {
+        this(rules, ForkJoinPool.commonPool(), evaluator);
+    }
+
+    public Minmax(Rules rules, ForkJoinPool pool, Evaluator evaluator) {
+        this.rules = rules;
+        this.pool = pool;
+        this.evaluator = evaluator;
+        tables = new TranspositionTable[rules.getPlayers()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = new TranspositionTable(rules.getStateCount(), rules.getMoveCount());
+        }
+        search = new Search();
+    }
 
     public String[] getRandomMove(ChopsticksGame game) {
-        List<String[]> validMoves = getAllValidMoves(game);
-        return validMoves.isEmpty() ? null : validMoves.get(random.nextInt(validMoves.size()));
+        return names(game, getRandomMoveCode(game));
+    }
+
+    public int getRandomMoveCode(ChopsticksGame game) {
+        if (game.isGameOver()) {
+            return Rules.NONE;
+        }
+
+        int state = stateOf(game);
+        int moveCount = 0;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (rules.successor(state, move) != Rules.NONE) moveCount++;
+        }
+        if (moveCount == 0) {
+            return Rules.NONE;
+        }
+
+        int pick = random.nextInt(moveCount);
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (rules.successor(state, move) != Rules.NONE && pick-- == 0) {
+                return move;
+            }
+        }
+        return Rules.NONE;
     }
 
     public List<String[]> getAllValidMoves(ChopsticksGame game) {
@@ -20,198 +118,748 @@ public class Minmax {
             return validMoves;
         }
 
-        int currentPlayer = game.getCurrentPlayer();
-        String[] playerHands = {"left", "right"};
-        String[] opponentHands = {"left", "right"};
+        int state = stateOf(game);
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (rules.successor(state, move) != Rules.NONE) {
+                validMoves.add(rules.moveNames(state, move));
+            }
+        }
 
-        for (String playerHand : playerHands) {
-            int attackValue = currentPlayer == 1 ?
-                    (playerHand.equals("left") ? game.getP1Left() : game.getP1Right()) :
-                    (playerHand.equals("left") ? game.getP2Left() : game.getP2Right());
+        return validMoves;
+    }
 
-            if (attackValue == 0) continue;
-            for (String opponentHand : opponentHands) {
-                int targetValue = currentPlayer == 1 ?
-                        (opponentHand.equals("left") ? game.getP2Left() : game.getP2Right()) :
-                        (opponentHand.equals("left") ? game.getP1Left() : game.getP1Right());
+    public String[] getBestMove(ChopsticksGame game, int depth) {
+        return names(game, getBestMoveCode(game, depth));
+    }
 
-                if (targetValue == 0) continue;
+    // Same as getBestMove, as a Rules move code for ChopsticksGame.makeMove(int).
+    public int getBestMoveCode(ChopsticksGame game, int depth) {
+        checkDepth(depth);
+        if (game.isGameOver()) {
+            return Rules.NONE;
+        }
 
-                validMoves.add(new String[]{playerHand, opponentHand});
+        int state = stateOf(game);
+        long start = System.nanoTime();
+        int bookMove = bookMove(state);
+        if (bookMove != Rules.NONE) {
+            report(new SearchStats(depth, 0, 0, 0, 0, 0, System.nanoTime() - start));
+            return bookMove;
+        }
+        MoveCache cache = moveCache;
+        String cacheName = cache != null ? cacheName() : null;
+        if (cache != null) {
+            int cachedMove = cache.get(rules, state, depth, cacheName);
+            if (cachedMove != Rules.NONE) {
+                report(new SearchStats(depth, 0, 0, 0, 0, 0, System.nanoTime() - start));
+                return cachedMove;
             }
         }
 
-        return validMoves;
+        search.timed = false;
+        search.mark();
+        int bestMove;
+        try {
+            bestMove = search.searchRoot(state, depth, Rules.NONE);
+        } catch (SearchAbortedException e) {
+            search.reset();
+            throw new CancellationException("Search interrupted");
+        }
+        if (cache != null) cache.put(rules, state, depth, cacheName, bestMove);
+        report(search.statsSince(depth, start));
+        return bestMove;
     }
 
-    public String[] getBestMove(ChopsticksGame game, int depth) {
-        GameState currentState = new GameState(
-                game.getP1Left(), game.getP1Right(),
-                game.getP2Left(), game.getP2Right(),
-                game.getCurrentPlayer()
-        );
-
-        List<String[]> validMoves = getAllValidMoves(game);
-        if (validMoves.isEmpty()) {
+    /**
+     * Iterative deepening: searches depth 1, 2, 3... until {@code budgetMillis} runs out and
+     * returns the best move of the last depth that finished. Each iteration starts from the
+     * previous best move, and the transposition table carries the ordering further down.
+     */
+    public String[] getBestMoveWithin(ChopsticksGame game, long budgetMillis) {
+        return getBestMoveWithin(game, budgetMillis, null);
+    }
+
+    // depthListener, if given, hears about every depth that finished in time.
+    public String[] getBestMoveWithin(ChopsticksGame game, long budgetMillis, IntConsumer depthListener) {
+        if (game.isGameOver()) {
             return null;
         }
 
-        String[] bestMove = null;
-        int bestScore = Integer.MIN_VALUE;
+        int state = stateOf(game);
+        long start = System.nanoTime();
+        int bookMove = bookMove(state);
+        if (bookMove != Rules.NONE) {
+            report(new SearchStats(0, 0, 0, 0, 0, 0, System.nanoTime() - start));
+            return names(game, bookMove);
+        }
+        int bestMove = Rules.NONE;
+        int finishedDepth = 0;
+        search.mark();
+
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            // Depth 1 always runs to completion so there is a move to return.
+            search.timed = depth > 1;
+            search.deadline = start + budgetMillis * 1_000_000L;
+            try {
+                bestMove = search.searchRoot(state, depth, bestMove);
+            } catch (SearchAbortedException e) {
+                search.reset();
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Search interrupted");
+                }
+                break;
+            }
+            finishedDepth = depth;
+            if (depthListener != null) depthListener.accept(depth);
+            if (isDecided(search.rootScore) || System.nanoTime() - search.deadline >= 0) break;
+        }
+        search.timed = false;
+        report(search.statsSince(finishedDepth, start));
 
-        for (String[] move : validMoves) {
-            GameState nextState = applyMove(currentState, move[0], move[1]);
-            if (nextState == null) continue;
+        return names(game, bestMove);
+    }
+
+    /**
+     * The search of {@link #getBestMove} spread over the fork-join pool with young brothers wait:
+     * at the root and at every node at least MIN_SPLIT_DEPTH from the leaves, the first move is
+     * searched alone and, unless it cuts off, the others at the same time. A root move is only
+     * chosen on an exact score and ties go to the first best move in order, as in the serial
+     * search. Node counts differ from it, and so, now and then, does the move: a table score is
+     * reused even on a line where its subtree would run into a repetition, so the result
+     * depends on the order the positions were searched in, just as it does between fresh and
+     * reused tables. With fresh tables and one worker that is 2 of the 18,432 (position, depth)
+     * pairs of the classic variants up to depth 8 (MinmaxTest pins the rest); more workers
+     * search in a different order every time. Use getBestMove where the exact move matters.
+     */
+    public String[] getBestMoveParallel(ChopsticksGame game, int depth) {
+        checkDepth(depth);
+        if (game.isGameOver()) {
+            return null;
+        }
 
-            int score = minimax(nextState, depth - 1, false, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int state = stateOf(game);
+        long start = System.nanoTime();
+        int bookMove = bookMove(state);
+        if (bookMove != Rules.NONE) {
+            report(new SearchStats(depth, 0, 0, 0, 0, 0, System.nanoTime() - start));
+            return names(game, bookMove);
+        }
+        MoveCache cache = moveCache;
+        String cacheName = cache != null ? cacheName() : null;
+        if (cache != null) {
+            int cachedMove = cache.get(rules, state, depth, cacheName);
+            if (cachedMove != Rules.NONE) {
+                report(new SearchStats(depth, 0, 0, 0, 0, 0, System.nanoTime() - start));
+                return names(game, cachedMove);
+            }
+        }
 
-            if (score > bestScore) {
-                bestScore = score;
-                bestMove = move;
+        Search root = new Search();
+        root.splitting = true;
+        ForkJoinTask<Integer> task = ForkJoinTask.adapt(() -> root.searchRoot(state, depth, Rules.NONE));
+        pool.execute(task);
+        int bestMove;
+        try {
+            bestMove = task.get();
+        } catch (InterruptedException e) {
+            root.stopped = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SearchAbortedException) {
+                throw new CancellationException("Search interrupted");
             }
+            throw new IllegalStateException("Parallel search failed", e.getCause());
+        } finally {
+            parallelNodes.add(root.nodes);
+            parallelCutoffs.add(root.cutoffs);
+            parallelFirstMoveCutoffs.add(root.firstMoveCutoffs);
         }
+        report(root.statsSince(depth, start));
 
-        return bestMove != null ? bestMove : validMoves.get(0);
+        if (cache != null) cache.put(rules, state, depth, cacheName, bestMove);
+        return names(game, bestMove);
     }
 
-    private int minimax(GameState state, int depth, boolean isMaximizing, int alpha, int beta) {
-        int winner = checkWinner(state);
-        if (winner == 2) return WIN_SCORE;
-        if (winner == 1) return LOSE_SCORE;
-        if (depth == 0) return evaluateState(state);
+    // The search keeps per-ply arrays MAX_DEPTH deep.
+    private void checkDepth(int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Search depth must be between 1 and " + MAX_DEPTH + ": " + depth);
+        }
+    }
 
-        List<GameState> nextStates = generateNextStates(state);
-        if (nextStates.isEmpty()) {
-            return isMaximizing ? LOSE_SCORE : WIN_SCORE;
+    // Perfect play from the solved table, no search at all. Two-player variants only.
+    public String[] getPerfectMove(ChopsticksGame game) {
+        if (game.isGameOver()) {
+            return null;
         }
 
-        if (isMaximizing) {
-            int maxScore = Integer.MIN_VALUE;
-            for (GameState nextState : nextStates) {
-                int score = minimax(nextState, depth - 1, false, alpha, beta);
-                maxScore = Math.max(maxScore, score);
-                alpha = Math.max(alpha, score);
-                if (beta <= alpha) break;
-            }
-            return maxScore;
-        } else {
-            int minScore = Integer.MAX_VALUE;
-            for (GameState nextState : nextStates) {
-                int score = minimax(nextState, depth - 1, true, alpha, beta);
-                minScore = Math.min(minScore, score);
-                beta = Math.min(beta, score);
-                if (beta <= alpha) break;
+        return names(game, Solver.of(rules).lookup(stateOf(game)).getBestMove());
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * With a tablebase, the searches only look at root moves that keep the best solved outcome
+     * (a won position stays won, a drawn one never turns into a loss); the search then picks
+     * among those as usual, the fastest win it can see first. A win further away than the
+     * search depth can still be put off forever, going round a cycle of won positions, so
+     * search at least as deep as the longest win of the variant (9 plies in classic Chopsticks,
+     * 25 with splits) to be sure of converting. Pass null to go back to plain search.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        if (tablebase != null && !tablebase.getRules().equals(rules)) {
+            throw new IllegalArgumentException("Tablebase is for " + tablebase.getRules() + ", AI was built for " + rules);
+        }
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * With a cache, getBestMove and getBestMoveParallel first look the position up there and
+     * only search (and then remember the answer) on a miss. Share one cache between engines
+     * that should reuse each other's results; pass null to always search.
+     */
+    public void setMoveCache(MoveCache cache) {
+        moveCache = cache;
+    }
+
+    /**
+     * Positions in the opening book (see OpeningBook) are answered with the book move by
+     * getBestMove, getBestMoveWithin and getBestMoveParallel, without searching. The file is
+     * read the first time a search needs it; if that fails, the engine says so on System.err
+     * and plays without a book. Pass null to go back to plain search.
+     */
+    public void setOpeningBook(Path file) {
+        synchronized (this) {
+            openingBook = null;
+            openingBookFile = file;
+        }
+    }
+
+    // The book move for state, or Rules.NONE when there is no book, the position isn't in it
+    // or the book's move isn't legal there. Only the first search after setOpeningBook locks.
+    private int bookMove(int state) {
+        OpeningBook book = openingBook;
+        if (book == null) {
+            if (openingBookFile == null) return Rules.NONE;
+            synchronized (this) {
+                Path file = openingBookFile;
+                if (openingBook == null && file != null) {
+                    try {
+                        openingBook = OpeningBook.open(file, rules);
+                    } catch (IOException e) {
+                        // Say so once and play on without a book, rather than failing every search.
+                        System.err.println("Ignoring opening book " + file + ": " + e.getMessage());
+                        openingBookFile = null;
+                    }
+                }
+                book = openingBook;
             }
-            return minScore;
+            if (book == null) return Rules.NONE;
         }
+
+        // A damaged or hand-edited book must not make the engine play an illegal move.
+        int move = book.move(state);
+        if (move == Rules.NONE || move >= rules.getMoveCount() || rules.successor(state, move) == Rules.NONE) {
+            return Rules.NONE;
+        }
+        return move;
     }
 
-    private int evaluateState(GameState state) {
+    // What this engine's answers depend on besides the position and depth.
+    private String cacheName() {
+        return tablebase != null ? evaluator.getName() + " + tablebase" : evaluator.getName();
+    }
 
-        int p1Total = state.p1Left + state.p1Right;
-        int p2Total = state.p2Left + state.p2Right;
-        return p2Total - p1Total;
+    /**
+     * Hears about every finished getBestMove, getBestMoveWithin and getBestMoveParallel call, on
+     * the calling thread, right before it returns. The counters are always kept (a few
+     * increments per node), so leaving a listener on costs one small object per call.
+     */
+    public void setStatsListener(Consumer<SearchStats> listener) {
+        statsListener = listener;
     }
 
-    private int checkWinner(GameState state) {
-        boolean p1Alive = state.p1Left > 0 || state.p1Right > 0;
-        boolean p2Alive = state.p2Left > 0 || state.p2Right > 0;
+    private void report(SearchStats stats) {
+        Consumer<SearchStats> listener = statsListener;
+        if (listener != null) listener.accept(stats);
+    }
 
-        if (!p2Alive) return 1;
-        if (!p1Alive) return 2;
+    // Forgets every cached search result, so the next search starts cold.
+    public void clearTables() {
+        for (TranspositionTable table : tables) {
+            table.clear();
+        }
+    }
 
-        boolean hasMoves = false;
-        if (state.currentPlayer == 1) {
-            if (state.p1Left > 0 && (state.p2Left > 0 || state.p2Right > 0)) hasMoves = true;
-            if (state.p1Right > 0 && (state.p2Left > 0 || state.p2Right > 0)) hasMoves = true;
-        } else {
-            if (state.p2Left > 0 && (state.p1Left > 0 || state.p1Right > 0)) hasMoves = true;
-            if (state.p2Right > 0 && (state.p1Left > 0 || state.p1Right > 0)) hasMoves = true;
+    // Positions visited by every search on this instance so far, parallel workers included.
+    public long getNodeCount() {
+        return search.nodes + parallelNodes.sum();
+    }
+
+    // Nodes that were cut off by alpha-beta, and how many of those by the first move tried.
+    // Their ratio is the share of cutoffs the move ordering got right straight away.
+    public long getCutoffCount() {
+        return search.cutoffs + parallelCutoffs.sum();
+    }
+
+    public long getFirstMoveCutoffCount() {
+        return search.firstMoveCutoffs + parallelFirstMoveCutoffs.sum();
+    }
+
+    private int stateOf(ChopsticksGame game) {
+        if (!game.getRules().equals(rules)) {
+            throw new IllegalArgumentException("Game uses " + game.getRules() + ", AI was built for " + rules);
         }
+        return game.getPackedState();
+    }
+
+    private String[] names(ChopsticksGame game, int move) {
+        return move != Rules.NONE ? rules.moveNames(game.getPackedState(), move) : null;
+    }
 
-        if (!hasMoves) {
-            return state.currentPlayer == 1 ? 2 : 1; // Current player loses
+    // The best solved result any root move reaches, for the player to move; DRAW without a tablebase.
+    private int bestOutcome(Tablebase tablebase, int state) {
+        if (tablebase == null) return Solver.DRAW;
+        int best = Solver.LOSS;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            int nextState = rules.successor(state, move);
+            if (nextState != Rules.NONE) best = Math.max(best, outcome(tablebase, nextState));
         }
+        return best;
+    }
 
-        return 0;
+    // Solved result of moving into nextState, for the player who moved (two players only).
+    private int outcome(Tablebase tablebase, int nextState) {
+        return tablebase == null ? Solver.DRAW : -tablebase.value(nextState);
+    }
+
+    // A win or loss found by the search, however far away.
+    private boolean isDecided(int score) {
+        return Math.abs(score) >= WIN_SCORE - MAX_DEPTH;
+    }
+
+    // The table keeps a win or loss as its distance from the position it is stored for, not
+    // from the root, so it reads back right at any ply.
+    private int toTable(int score, int ply) {
+        return !isDecided(score) ? score : score > 0 ? score + ply : score - ply;
+    }
+
+    private int fromTable(int score, int ply) {
+        return !isDecided(score) ? score : score > 0 ? score - ply : score + ply;
+    }
+
+    /**
+     * Scores the first {@code count} states the way a search leaf does: WIN_SCORE or LOSE_SCORE
+     * once someone has won (as at the root, with no distance taken off), otherwise the evaluator. Same numbers as the search, with the
+     * evaluator's batch loop doing the work instead of a call per position.
+     */
+    public void evaluate(int[] states, int count, int aiPlayer, int[] scores) {
+        evaluator.evaluate(states, count, aiPlayer, scores);
+
+        for (int i = 0; i < count; i++) {
+            int winner = rules.winner(states[i]);
+            if (winner != 0) scores[i] = winner == aiPlayer ? WIN_SCORE : LOSE_SCORE;
+        }
     }
 
-    private List<GameState> generateNextStates(GameState state) {
-        List<GameState> nextStates = new ArrayList<>();
-        if (checkWinner(state) != 0) return nextStates;
+    // Everything one search thread needs of its own; the transposition tables are shared.
+    private class Search {
+        private final int[] path = new int[MAX_DEPTH + 1];
+        private int pathLength;
+        // Per ply: the legal moves in search order, their sort keys and their successors.
+        private final int[][] moves = new int[MAX_DEPTH + 1][rules.getMoveCount()];
+        private final int[][] moveKeys = new int[MAX_DEPTH + 1][rules.getMoveCount()];
+        private final int[][] nextStates = new int[MAX_DEPTH + 1][rules.getMoveCount()];
+        // Two quiet moves per ply that recently caused a cutoff there.
+        private final int[][] killers = new int[MAX_DEPTH + 1][2];
+        // How often (weighted by depth) each move of each player caused a cutoff anywhere.
+        private final int[] history = new int[rules.getPlayers() * rules.getMoveCount()];
+        private long cutoffs;
+        private long firstMoveCutoffs;
+        private long leaves;
+        private int maxPly;
+        // Counters at the start of the current public call, see mark.
+        private long markNodes;
+        private long markLeaves;
+        private long markCutoffs;
+        private long markFirstMoveCutoffs;
+        private int aiPlayer;
+        private TranspositionTable table;
+        private int repetitions;
+        private long nodes;
+        private int rootScore;
+        private boolean timed;
+        private long deadline;
+        private volatile boolean stopped;
+        // Parallel searches only: split the moves of big enough nodes over the pool (see
+        // searchBrothers). owner is the search that forked this one, and splitCutOff tells
+        // the brothers this search forked that one of them already cut off.
+        private boolean splitting;
+        private Search owner;
+        private volatile boolean splitCutOff;
+        // The window of the current split as its brothers narrow it, see searchBrothers.
+        private final AtomicInteger splitAlpha = new AtomicInteger();
+        private final AtomicInteger splitBeta = new AtomicInteger();
+
+        Search() {
+            for (int[] plyKillers : killers) {
+                Arrays.fill(plyKillers, Rules.NONE);
+            }
+        }
 
-        if (state.currentPlayer == 1) {
-            if (state.p1Left > 0) {
-                if (state.p2Left > 0) nextStates.add(applyMove(state, "left", "left"));
-                if (state.p2Right > 0) nextStates.add(applyMove(state, "left", "right"));
+        // Makes this (spare) search a brother starting where owner is on its line of play, with
+        // nothing counted yet. The move ordering is copied when the brother actually starts.
+        private void follow(Search owner) {
+            this.owner = owner;
+            aiPlayer = owner.aiPlayer;
+            table = owner.table;
+            splitting = true;
+            stopped = false;
+            splitCutOff = false;
+            nodes = leaves = cutoffs = firstMoveCutoffs = 0;
+            repetitions = 0;
+            maxPly = 0;
+            pathLength = owner.pathLength;
+            System.arraycopy(owner.path, 0, path, 0, pathLength);
+        }
+
+        // Alpha-beta at the root as everywhere else: alpha rises with the best score so far and
+        // beta stays open, so a move that beats alpha comes back with its exact score. Ties keep
+        // the first best move in search order (firstMove, then code order).
+        int searchRoot(int state, int depth, int firstMove) {
+            begin(state);
+            Tablebase tablebase = Minmax.this.tablebase;
+            int bestOutcome = bestOutcome(tablebase, state);
+            int[] rootMoves = moves[0];
+            int[] rootNextStates = nextStates[0];
+            int moveCount = 0;
+            for (int i = -1; i < rules.getMoveCount(); i++) {
+                int move = i < 0 ? firstMove : i;
+                if (move == Rules.NONE || (i >= 0 && move == firstMove)) continue;
+
+                int nextState = rules.successor(state, move);
+                if (nextState == Rules.NONE || outcome(tablebase, nextState) < bestOutcome) continue;
+                rootMoves[moveCount] = move;
+                rootNextStates[moveCount++] = nextState;
             }
-            if (state.p1Right > 0) {
-                if (state.p2Left > 0) nextStates.add(applyMove(state, "right", "left"));
-                if (state.p2Right > 0) nextStates.add(applyMove(state, "right", "right"));
+
+            int bestMove = Rules.NONE;
+            int bestScore = Integer.MIN_VALUE;
+            int[] brotherScores = null;
+            for (int i = 0; i < moveCount; i++) {
+                int score = brotherScores != null ? brotherScores[i]
+                        : minimax(rootNextStates[i], depth - 1, bestScore, Integer.MAX_VALUE);
+                if (bestMove == Rules.NONE || score > bestScore) {
+                    bestScore = score;
+                    bestMove = rootMoves[i];
+                }
+                if (i == 0 && splitting && depth >= MIN_SPLIT_DEPTH && moveCount > 2) {
+                    brotherScores = searchBrothers(state, 0, depth, bestScore, Integer.MAX_VALUE, moveCount, false);
+                }
+            }
+            pathLength = 0;
+
+            rootScore = bestScore;
+            return bestMove;
+        }
+
+        // Start of a public call: statsSince then reports only what this call did.
+        void mark() {
+            markNodes = nodes;
+            markLeaves = leaves;
+            markCutoffs = cutoffs;
+            markFirstMoveCutoffs = firstMoveCutoffs;
+            maxPly = 0;
+        }
+
+        SearchStats statsSince(int depth, long start) {
+            return new SearchStats(depth, maxPly, nodes - markNodes, leaves - markLeaves, cutoffs - markCutoffs,
+                    firstMoveCutoffs - markFirstMoveCutoffs, System.nanoTime() - start);
+        }
+
+        void reset() {
+            pathLength = 0;
+            timed = false;
+        }
+
+        // The AI is whoever moves at the root; with more than two players everyone else is against it.
+        private void begin(int rootState) {
+            aiPlayer = rules.currentPlayer(rootState);
+            table = tables[aiPlayer - 1];
+            path[0] = rootState;
+            pathLength = 1;
+        }
+
+        private int minimax(int state, int depth, int alpha, int beta) {
+            if ((++nodes & 1023) == 0 && shouldStop()) {
+                throw new SearchAbortedException();
             }
-        } else {
-            if (state.p2Left > 0) {
-                if (state.p1Left > 0) nextStates.add(applyMove(state, "left", "left"));
-                if (state.p1Right > 0) nextStates.add(applyMove(state, "left", "right"));
+            if (pathLength > maxPly) maxPly = pathLength;
+
+            int winner = rules.winner(state);
+            if (winner == aiPlayer) return WIN_SCORE - pathLength;
+            if (winner != 0) return LOSE_SCORE + pathLength;
+            if (isOnPath(state)) {
+                // Back to a position already on this line of play: nobody can force progress.
+                repetitions++;
+                return DRAW_SCORE;
             }
-            if (state.p2Right > 0) {
-                if (state.p1Left > 0) nextStates.add(applyMove(state, "right", "left"));
-                if (state.p1Right > 0) nextStates.add(applyMove(state, "right", "right"));
+            if (depth == 0) {
+                leaves++;
+                return evaluator.evaluate(state, aiPlayer);
             }
+
+            boolean isMaximizing = rules.currentPlayer(state) == aiPlayer;
+            long entry = table.probe(state);
+            int tableMove = Rules.NONE;
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) == depth) {
+                    int score = fromTable(TranspositionTable.score(entry), pathLength);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT) return score;
+                    if (flag == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+                    if (flag == TranspositionTable.UPPER) beta = Math.min(beta, score);
+                    if (beta <= alpha) return score;
+                }
+            }
+
+            int originalAlpha = alpha;
+            int originalBeta = beta;
+            int repetitionsBefore = repetitions;
+            int bestScore = isMaximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int bestMove = Rules.NONE;
+
+            int ply = pathLength;
+            int[] plyMoves = moves[ply];
+            int[] plyNextStates = nextStates[ply];
+            int moveCount = 0;
+            if (tableMove != Rules.NONE) {
+                plyMoves[0] = tableMove;
+                plyNextStates[0] = rules.successor(state, tableMove);
+                if (plyNextStates[0] != Rules.NONE) moveCount = 1;
+            }
+            boolean generated = false;
+            int nextCode = 0;
+            int[] brotherScores = null;
+
+            path[pathLength++] = state;
+            // The table's move is tried on its own first: it cuts off often enough that the
+            // other moves usually never need to be generated and ordered. Near the leaves the
+            // rest come one at a time in code order; higher up they are sorted by orderMoves.
+            for (int i = 0; ; i++) {
+                int move;
+                int nextState;
+                if (depth < MIN_ORDERING_DEPTH && i >= moveCount) {
+                    nextState = Rules.NONE;
+                    for (; nextCode < rules.getMoveCount() && nextState == Rules.NONE; nextCode++) {
+                        if (nextCode != tableMove) nextState = rules.successor(state, nextCode);
+                    }
+                    if (nextState == Rules.NONE) break;
+                    move = nextCode - 1;
+                } else {
+                    if (i == moveCount && !generated) {
+                        moveCount = orderMoves(state, ply, tableMove, moveCount);
+                        generated = true;
+                    }
+                    if (i == moveCount) break;
+                    move = plyMoves[i];
+                    nextState = plyNextStates[i];
+                }
+
+                int score = brotherScores != null ? brotherScores[i] : minimax(nextState, depth - 1, alpha, beta);
+                if (score == ABORTED_SCORE) continue;
+                if (isMaximizing ? score > bestScore : score < bestScore) {
+                    bestScore = score;
+                    bestMove = move;
+                }
+                if (isMaximizing) {
+                    alpha = Math.max(alpha, score);
+                } else {
+                    beta = Math.min(beta, score);
+                }
+                if (beta <= alpha) {
+                    recordCutoff(state, ply, depth, move, move == tableMove);
+                    if (i == 0) firstMoveCutoffs++;
+                    break;
+                }
+                // Young brothers wait: only once the first move failed to cut off are the
+                // others worth searching at the same time.
+                if (i == 0 && splitting && depth >= MIN_SPLIT_DEPTH) {
+                    if (!generated) {
+                        moveCount = orderMoves(state, ply, tableMove, moveCount);
+                        generated = true;
+                    }
+                    if (moveCount > 2) brotherScores = searchBrothers(state, ply, depth, alpha, beta, moveCount, true);
+                }
+            }
+            pathLength--;
+
+            if (bestMove == Rules.NONE) {
+                return isMaximizing ? LOSE_SCORE + pathLength : WIN_SCORE - pathLength;
+            }
+
+            // A score that leaned on a repetition depends on how we got here, so don't share it.
+            if (repetitions == repetitionsBefore) {
+                int flag = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                        : bestScore >= originalBeta ? TranspositionTable.LOWER
+                        : TranspositionTable.EXACT;
+                table.store(state, depth, flag, toTable(bestScore, pathLength), bestMove);
+            }
+            return bestScore;
         }
-        return nextStates;
-    }
 
-    private GameState applyMove(GameState state, String playerHand, String opponentHand) {
-        GameState newState = new GameState(
-                state.p1Left, state.p1Right,
-                state.p2Left, state.p2Right,
-                state.currentPlayer
-        );
+        // Searches moves[ply][1..moveCount) of the node at ply at the same time, each in its own
+        // fork-join task, and returns their scores by index. Inside the tree a brother starts with
+        // the window its finished brothers have narrowed so far; at the root (narrow false) every
+        // brother gets the window the first move left, so a score above it is exact and ties go
+        // to the first best move as in the serial search. A brother that cuts off stops the others;
+        // those score ABORTED_SCORE, which the caller skips: the node fails on the cutoff anyway.
+        private int[] searchBrothers(int state, int ply, int depth, int alpha, int beta, int moveCount,
+                boolean narrow) {
+            boolean isMaximizing = rules.currentPlayer(state) == aiPlayer;
+            int[] scores = new int[moveCount];
+            Search[] brothers = new Search[moveCount];
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(moveCount - 1);
+            splitCutOff = false;
+            splitAlpha.set(alpha);
+            splitBeta.set(beta);
+            for (int i = 1; i < moveCount; i++) {
+                Search spare = spareSearches.poll();
+                Search brother = spare != null ? spare : new Search();
+                brother.follow(this);
+                brothers[i] = brother;
+                int index = i;
+                int nextState = nextStates[ply][i];
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    // Brothers are often too small to reach a poll in minimax, so check here too.
+                    if (brother.shouldStop()) {
+                        scores[index] = ABORTED_SCORE;
+                        return;
+                    }
+                    brother.copyOrdering(this);
+                    try {
+                        int score = narrow ? brother.minimax(nextState, depth - 1, splitAlpha.get(), splitBeta.get())
+                                : brother.minimax(nextState, depth - 1, alpha, beta);
+                        scores[index] = score;
+                        copyOrdering(brother);
+                        if (isMaximizing ? score >= beta : score <= alpha) {
+                            splitCutOff = true;
+                        } else if (isMaximizing) {
+                            splitAlpha.accumulateAndGet(score, Math::max);
+                        } else {
+                            splitBeta.accumulateAndGet(score, Math::min);
+                        }
+                    } catch (SearchAbortedException e) {
+                        scores[index] = ABORTED_SCORE;
+                    }
+                }));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            boolean aborted = false;
+            for (int i = 1; i < moveCount; i++) {
+                Search brother = brothers[i];
+                nodes += brother.nodes;
+                leaves += brother.leaves;
+                cutoffs += brother.cutoffs;
+                firstMoveCutoffs += brother.firstMoveCutoffs;
+                repetitions += brother.repetitions;
+                maxPly = Math.max(maxPly, brother.maxPly);
+                aborted |= scores[i] == ABORTED_SCORE;
+                brother.owner = null;
+                spareSearches.add(brother);
+            }
+            // Stopped from outside rather than by a cutoff here.
+            if (aborted && !splitCutOff) throw new SearchAbortedException();
+            return scores;
+        }
 
-        int attackValue, targetValue;
-        if (newState.currentPlayer == 1) {
-            attackValue = playerHand.equals("left") ? newState.p1Left : newState.p1Right;
-            if (opponentHand.equals("left")) {
-                targetValue = newState.p2Left;
-                if (targetValue == 0) return null;
-                newState.p2Left = (targetValue + attackValue) % MAX_FINGERS;
-                if (newState.p2Left == 0) newState.p2Left = 0;
-            } else {
-                targetValue = newState.p2Right;
-                if (targetValue == 0) return null;
-                newState.p2Right = (targetValue + attackValue) % MAX_FINGERS;
-                if (newState.p2Right == 0) newState.p2Right = 0;
+        // Killers and history handed from one search to another. Brothers running at the same
+        // time may interleave their copies; that only costs move ordering, never a wrong score.
+        private void copyOrdering(Search from) {
+            for (int ply = 0; ply < killers.length; ply++) {
+                killers[ply][0] = from.killers[ply][0];
+                killers[ply][1] = from.killers[ply][1];
             }
-        } else {
-            attackValue = playerHand.equals("left") ? newState.p2Left : newState.p2Right;
-            if (opponentHand.equals("left")) {
-                targetValue = newState.p1Left;
-                if (targetValue == 0) return null;
-                newState.p1Left = (targetValue + attackValue) % MAX_FINGERS;
-                if (newState.p1Left == 0) newState.p1Left = 0;
-            } else {
-                targetValue = newState.p1Right;
-                if (targetValue == 0) return null;
-                newState.p1Right = (targetValue + attackValue) % MAX_FINGERS;
-                if (newState.p1Right == 0) newState.p1Right = 0;
+            System.arraycopy(from.history, 0, history, 0, history.length);
+        }
+
+        // Appends the legal moves other than the table move to moves[ply] from index start, best
+        // first: the two killers of this ply, then by history score. Ties keep the usual order.
+        private int orderMoves(int state, int ply, int tableMove, int start) {
+            int[] plyMoves = moves[ply];
+            int[] keys = moveKeys[ply];
+            int[] plyNextStates = nextStates[ply];
+            int historyBase = (rules.currentPlayer(state) - 1) * rules.getMoveCount();
+            int count = start;
+
+            for (int move = 0; move < rules.getMoveCount(); move++) {
+                if (move == tableMove) continue;
+                int nextState = rules.successor(state, move);
+                if (nextState == Rules.NONE) continue;
+
+                int key = move == killers[ply][0] ? Integer.MAX_VALUE
+                        : move == killers[ply][1] ? Integer.MAX_VALUE - 1
+                        : history[historyBase + move];
+                // Insertion sort: there are only a handful of moves.
+                int i = count++;
+                for (; i > start && keys[i - 1] < key; i--) {
+                    plyMoves[i] = plyMoves[i - 1];
+                    keys[i] = keys[i - 1];
+                    plyNextStates[i] = plyNextStates[i - 1];
+                }
+                plyMoves[i] = move;
+                keys[i] = key;
+                plyNextStates[i] = nextState;
             }
+            return count;
         }
 
-        newState.currentPlayer = 3 - newState.currentPlayer;
-        return newState;
+        private void recordCutoff(int state, int ply, int depth, int move, boolean tableMove) {
+            cutoffs++;
+            if (tableMove) return;
+
+            if (killers[ply][0] != move) {
+                killers[ply][1] = killers[ply][0];
+                killers[ply][0] = move;
+            }
+            int index = (rules.currentPlayer(state) - 1) * rules.getMoveCount() + move;
+            history[index] += depth * depth;
+            if (history[index] > 1 << 24) {
+                for (int i = 0; i < history.length; i++) {
+                    history[i] >>= 1;
+                }
+            }
+        }
+
+        private boolean isOnPath(int state) {
+            for (int i = 0; i < pathLength; i++) {
+                if (path[i] == state) return true;
+            }
+            return false;
+        }
+
+        // Polled every 1024 nodes: out of time, stopped by the caller, no longer needed by the
+        // search that forked us, or our thread was interrupted.
+        private boolean shouldStop() {
+            return (timed && System.nanoTime() - deadline >= 0) || isCancelled()
+                    || Thread.currentThread().isInterrupted();
+        }
+
+        private boolean isCancelled() {
+            return stopped || (owner != null && (owner.splitCutOff || owner.isCancelled()));
+        }
     }
 
-    private static class GameState {
-        int p1Left, p1Right, p2Left, p2Right;
-        int currentPlayer;
+    private static class SearchAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
-        public GameState(int p1Left, int p1Right, int p2Left, int p2Right, int currentPlayer) {
-            this.p1Left = p1Left;
-            this.p1Right = p1Right;
-            this.p2Left = p2Left;
-            this.p2Right = p2Right;
-            this.currentPlayer = currentPlayer;
+        SearchAbortedException() {
+            super(null, null, false, false);
         }
     }
 }
@@ -219,24 +867,73 @@ public class Minmax {
 //    - Gets all valid moves using getAllValidMoves.
 //    - Checks each move using the minimax  algorithm.
 //    - Picks the move with the highest score.
+//    - The depth has to be between 1 and 64 (the search keeps arrays that deep);
+//      anything else is an IllegalArgumentException.
+
+// . getBestMoveWithin:
+//    - Same as getBestMove, but keeps going one level deeper until the time budget is spent.
+//    - Returns the move from the deepest search that finished in time.
+
+// . getBestMoveParallel:
+//    - Same search as getBestMove, but once the first move of a big enough position has been
+//      searched, the other moves are searched at the same time on the other cores.
+//    - Usually picks the same move as getBestMove, but not always: see its Javadoc.
+
+// . getPerfectMove:
+//    - Looks the position up in the Solver table, which knows the real result of every position.
+//    - Used for Hard, since depth-limited search can't see through loops.
+
+// . getNodeCount:
+//    - Total positions searched by this AI so far; Tournament uses it to report nodes per second.
+
+// . setTablebase:
+//    - Loads the solved results from a Tablebase file, so the AI never throws away a won or drawn game.
+//    - The search still chooses between the moves that keep the best result, the fastest win first.
+//    - A win deeper than the search depth can still go round in circles without being played out.
+
+// . setOpeningBook:
+//    - Answers the first few moves of a game straight from a book file made with OpeningBook,
+//      so the opening (where every game starts) never waits for a search.
+
+// . setMoveCache:
+//    - Remembers the best move for each (position, depth, evaluator) already searched, so the
+//      opening and other positions that come up again and again are answered without searching.
+//    - One MoveCache can be shared by many AIs and threads, and saved to a file for the next run.
+
+// . evaluate:
+//    - The evaluator (and the win/loss check) for a whole array of packed positions in one call.
+//    - Used for offline analysis of big position lists.
+
+// . setStatsListener:
+//    - Gets a SearchStats after every search: nodes, leaves, cutoffs, how deep it went and how long it took.
 
 // . minimax:
 //    - Simulates all possible moves for both players and calculates a score for each one.
-//    - Gives a score if there’s a winner (positive for AI win, negative for opponent win).
+//    - Gives a score if there’s a winner (positive for AI win, negative for opponent win),
+//      a bit less for a win further away, so the AI wins as fast as it can and loses as late as it can.
+//    - The AI is whoever is to move when getBestMove is called.
 //    - Looks ahead to possible future moves, trying to maximize the AI's score and minimize the opponent’s score.
 //    - Stops when no moves are left or when depth limit is reached.
-
-// . evaluateState:
-//    - Adds up the AI's fingers and subtracts the opponent’s fingers.
-//    - Returns a score: positive if AI has more fingers, negative if opponent has more.
+//    - Positions already searched come out of the transposition table; a position that repeats
+//      one earlier on the same line counts as a draw instead of being searched again.
+//    - Tries moves in a smart order (table move, killer moves, history) so alpha-beta cuts more.
+//      getCutoffCount / getFirstMoveCutoffCount show how often the first move was already enough.
+
+// . Evaluator:
+//    - Scores a position when the search stops looking ahead; given to the constructor.
+//    - FingerCountEvaluator (the default) adds up the AI's fingers and subtracts the opponents’
+//      fingers: positive if AI has more fingers, negative if opponent has more.
+//    - TableEvaluator looks the score up in a table learned from self-play games, and
+//      CachedEvaluator remembers the scores of a slow evaluator.
 
 // . getAllValidMoves:
-//    - Checks every combination of the AI’s hands (left and right) and the opponent’s hands.
-//    - Adds valid moves to the list.
+//    - Checks every move code of the Rules against the position, taps first, then splits.
+//    - Adds valid moves to the list; a split comes back as {"split", new fingers per hand...}.
 
-// . applyMove:
-//    - Takes the current game state and applies the move.
-//    - Updates the number of fingers for both players’ hands and switches to the other player’s turn.
+// . Rules:
+//    - Packs all hands and the player to move into a single int and works out the successors.
+//    - Small variants precompute every successor once, so the search never allocates.
+//    - With more than two players the AI assumes everybody else plays against it.
 
 //When I refer to the AI in the context of the code,
 // I mean the computer-controlled player in the game that makes decisions based on the current game state.
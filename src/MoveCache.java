@@ -0,0 +1,211 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Best moves Minmax has already found, keyed on (rules, position, depth, evaluator), so a
+ * position that comes up again costs a hash lookup instead of a search. One cache can be
+ * shared by any number of Minmax instances and threads (see {@link Minmax#setMoveCache}).
+ *
+ * <p>The entries are split over independently locked stripes, each its own LRU list, so
+ * threads only wait for each other when they hit the same stripe. The capacity is split
+ * evenly, which makes eviction least-recently-used per stripe rather than overall.
+ *
+ * <p>{@link #save} and {@link #load} keep a cache between runs; the file is a small header
+ * followed by one record per entry, oldest first.
+ */
+public final class MoveCache {
+    private static final int MAGIC = 0x43484D43; // "CHMC"
+    private static final int VERSION = 1;
+    private static final int STRIPES = 16;
+    private static final int ROLLOVER_FLAG = 1;
+    private static final int SPLITS_FLAG = 2;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MoveCache(int capacity) {
+        if (capacity < STRIPES) {
+            throw new IllegalArgumentException("Capacity must be at least " + STRIPES + ": " + capacity);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity / STRIPES);
+        }
+    }
+
+    /** The cached move code, or Rules.NONE (counted as a miss) if this search hasn't been done. */
+    public int get(Rules rules, int state, int depth, String evaluator) {
+        Key key = new Key(rules, state, depth, evaluator);
+        Integer move;
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            move = stripe.get(key);
+        }
+        if (move == null) {
+            misses.increment();
+            return Rules.NONE;
+        }
+        hits.increment();
+        return move;
+    }
+
+    public void put(Rules rules, int state, int depth, String evaluator, int move) {
+        if (move == Rules.NONE) return;
+        Key key = new Key(rules, state, depth, evaluator);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, move);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+
+    public double getHitRate() {
+        long lookups = getHitCount() + getMissCount();
+        return lookups == 0 ? 0 : (double) getHitCount() / lookups;
+    }
+
+    /** Writes every entry to {@code file}, replacing it. Other threads can keep using the cache. */
+    public void save(Path file) throws IOException {
+        List<Map.Entry<Key, Integer>> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries.addAll(new ArrayList<>(stripe.entrySet()));
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<Key, Integer> entry : entries) {
+                Key key = entry.getKey();
+                out.writeByte(key.rules.getFingers());
+                out.writeByte(key.rules.getHands());
+                out.writeByte(key.rules.getPlayers());
+                out.writeByte((key.rules.isRollover() ? ROLLOVER_FLAG : 0) | (key.rules.hasSplits() ? SPLITS_FLAG : 0));
+                out.writeInt(key.state);
+                out.writeByte(key.depth);
+                out.writeUTF(key.evaluator);
+                out.writeShort(entry.getValue());
+            }
+        }
+    }
+
+    /** Adds the entries saved in {@code file} to this cache; a missing file loads nothing. */
+    public void load(Path file) throws IOException {
+        if (!Files.exists(file)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " move cache: " + file);
+            }
+            int count = in.readInt();
+            // Consecutive entries nearly always share their rules; don't rebuild the tables each time.
+            Rules rules = null;
+            for (int i = 0; i < count; i++) {
+                int fingers = in.readUnsignedByte();
+                int hands = in.readUnsignedByte();
+                int players = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                if (rules == null || rules.getFingers() != fingers || rules.getHands() != hands
+                        || rules.getPlayers() != players || rules.isRollover() != ((flags & ROLLOVER_FLAG) != 0)
+                        || rules.hasSplits() != ((flags & SPLITS_FLAG) != 0)) {
+                    rules = new Rules(fingers, hands, players, (flags & ROLLOVER_FLAG) != 0, (flags & SPLITS_FLAG) != 0);
+                }
+                int state = in.readInt();
+                int depth = in.readUnsignedByte();
+                String evaluator = in.readUTF();
+                put(rules, state, depth, evaluator, in.readShort());
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated move cache: " + file, e);
+        }
+    }
+
+    private Stripe stripeFor(Key key) {
+        // The hash's low bits pick the slot inside the stripe's table; use the high ones here.
+        return stripes[(key.hashCode() >>> 28) & (STRIPES - 1)];
+    }
+
+    private final class Stripe extends LinkedHashMap<Key, Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private static final class Key {
+        private final Rules rules;
+        private final int state;
+        private final int depth;
+        private final String evaluator;
+        private final int hash;
+
+        Key(Rules rules, int state, int depth, String evaluator) {
+            this.rules = rules;
+            this.state = state;
+            this.depth = depth;
+            this.evaluator = evaluator;
+            long mixed = (rules.positionKey(state) + depth * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L
+                    ^ evaluator.hashCode();
+            this.hash = (int) (mixed ^ (mixed >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return state == other.state && depth == other.depth && rules.equals(other.rules)
+                    && evaluator.equals(other.evaluator);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ready-made moves for the positions of the first few plies, so the AI can answer them
+ * without searching (see {@link Minmax#setOpeningBook}). A book is built offline, either from
+ * the solved table or from recorded games. Books are small, so open reads the whole file onto
+ * the heap; the first memory map in a JVM costs more than reading a few kilobytes.
+ *
+ * <p>File layout: a 32-byte header (magic, version, fingers, hands, players, flags, entry
+ * count, plies; big-endian ints like the Tablebase header), the packed states in ascending
+ * order as ints, then one byte per state with its move code.
+ *
+ * <pre>
+ * java OpeningBook FILE PLIES solver [splits]
+ * java OpeningBook FILE PLIES RECORD_FILE
+ * </pre>
+ * The first form takes every position reachable in PLIES plies and the solver's move for it.
+ * The second takes the positions games in RECORD_FILE (see GameRecordWriter) passed through
+ * in their first PLIES plies, and for each the move that scored best for the side that played it.
+ */
+public final class OpeningBook {
+    private static final int MAGIC = 0x43484F42; // "CHOB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ROLLOVER_FLAG = 1;
+    private static final int SPLITS_FLAG = 2;
+    // A move has to turn up in this many recorded games before the book trusts it.
+    private static final int MIN_GAMES = 4;
+
+    private final Rules rules;
+    private final ByteBuffer data;
+    private final int size;
+    private final int plies;
+
+    private OpeningBook(Rules rules, ByteBuffer data, int size, int plies) {
+        this.rules = rules;
+        this.data = data;
+        this.size = size;
+        this.plies = plies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java OpeningBook FILE PLIES solver [splits]");
+            System.err.println("       java OpeningBook FILE PLIES RECORD_FILE");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int plies = Integer.parseInt(args[1]);
+
+        long start = System.nanoTime();
+        int entries;
+        if (args[2].equals("solver")) {
+            boolean splits = args.length > 3 && args[3].equals("splits");
+            entries = writeFromSolver(splits ? Rules.CLASSIC_WITH_SPLITS : Rules.CLASSIC, plies, file);
+        } else {
+            entries = writeFromRecords(Paths.get(args[2]), plies, file);
+        }
+        System.out.printf("%d positions written to %s in %.1f s%n", entries, file, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Writes a book with the solver's move for every position reachable from the start in
+     * fewer than {@code plies} plies (two-player variants only). Returns the number of entries.
+     */
+    public static int writeFromSolver(Rules rules, int plies, Path file) throws IOException {
+        Solver solver = Solver.of(rules);
+        TreeMap<Integer, Integer> moves = new TreeMap<>();
+        Map<Integer, Integer> seen = new HashMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int start = new ChopsticksGame(rules).getPackedState();
+        seen.put(start, 0);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int ply = seen.get(state);
+            int move = solver.lookup(state).getBestMove();
+            if (rules.winner(state) != 0 || move == Rules.NONE) continue;
+            moves.put(state, move);
+            if (ply + 1 >= plies) continue;
+
+            for (int next = 0; next < rules.getMoveCount(); next++) {
+                int nextState = rules.successor(state, next);
+                if (nextState != Rules.NONE && seen.putIfAbsent(nextState, ply + 1) == null) {
+                    queue.add(nextState);
+                }
+            }
+        }
+        write(rules, plies, moves, file);
+        return moves.size();
+    }
+
+    /**
+     * Writes a book from recorded games: for each position met in the first {@code plies}
+     * plies, the move with the best average result for the player who chose it (win 1, loss
+     * -1, unfinished 0), among moves played at least a few times. Returns the number of entries.
+     */
+    public static int writeFromRecords(Path records, int plies, Path file) throws IOException {
+        Rules rules;
+        // Per state: games and summed result for each move code, interleaved.
+        Map<Integer, int[]> tallies = new HashMap<>();
+        try (GameRecordReader reader = GameRecordReader.open(records)) {
+            rules = reader.getRules();
+            int moveCount = rules.getMoveCount();
+            ChopsticksGame game = new ChopsticksGame(rules);
+            int[] states = new int[plies];
+            int[] movers = new int[plies];
+
+            while (reader.next()) {
+                game.resetGame();
+                int recorded = Math.min(plies, reader.getMoveCount());
+                for (int ply = 0; ply < reader.getMoveCount(); ply++) {
+                    if (ply < recorded) {
+                        states[ply] = game.getPackedState();
+                        movers[ply] = game.getCurrentPlayer();
+                    }
+                    if (!game.makeMove(reader.getMove(ply))) {
+                        throw new IOException("Illegal move at ply " + ply + " in " + records);
+                    }
+                }
+
+                for (int ply = 0; ply < recorded; ply++) {
+                    int[] tally = tallies.computeIfAbsent(states[ply], s -> new int[2 * moveCount]);
+                    int move = reader.getMove(ply);
+                    tally[2 * move]++;
+                    if (game.isGameOver()) tally[2 * move + 1] += game.getWinner() == movers[ply] ? 1 : -1;
+                }
+            }
+        }
+
+        TreeMap<Integer, Integer> moves = new TreeMap<>();
+        for (Map.Entry<Integer, int[]> entry : tallies.entrySet()) {
+            int[] tally = entry.getValue();
+            int bestMove = Rules.NONE;
+            double bestScore = 0;
+            for (int move = 0; move < tally.length / 2; move++) {
+                if (tally[2 * move] < MIN_GAMES) continue;
+                double score = (double) tally[2 * move + 1] / tally[2 * move];
+                if (bestMove == Rules.NONE || score > bestScore) {
+                    bestMove = move;
+                    bestScore = score;
+                }
+            }
+            if (bestMove != Rules.NONE) moves.put(entry.getKey(), bestMove);
+        }
+        write(rules, plies, moves, file);
+        return moves.size();
+    }
+
+    /** Reads a book written by one of the write methods; the rules come from its header. */
+    public static OpeningBook open(Path file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Same, for a book that has to be for {@code rules}; cheaper, since the rules don't have to
+     * be built again from the header.
+     */
+    public static OpeningBook open(Path file, Rules expected) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) throw new IOException("Truncated opening book: " + file);
+            }
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Not a version " + VERSION + " opening book: " + file);
+            }
+
+            int flags = data.getInt(20);
+            Rules rules;
+            if (expected == null) {
+                rules = new Rules(data.getInt(8), data.getInt(12), data.getInt(16),
+                        (flags & ROLLOVER_FLAG) != 0, (flags & SPLITS_FLAG) != 0);
+            } else if (data.getInt(8) == expected.getFingers() && data.getInt(12) == expected.getHands()
+                    && data.getInt(16) == expected.getPlayers()
+                    && flags == ((expected.isRollover() ? ROLLOVER_FLAG : 0) | (expected.hasSplits() ? SPLITS_FLAG : 0))) {
+                rules = expected;
+            } else {
+                throw new IOException("Opening book " + file + " is for another variant than " + expected);
+            }
+            int size = data.getInt(24);
+            if (size < 0 || channel.size() != HEADER_SIZE + 5L * size) {
+                throw new IOException("Truncated or mismatched opening book: " + file);
+            }
+            return new OpeningBook(rules, data, size, data.getInt(28));
+        }
+    }
+
+    /** The book move for {@code state}, or Rules.NONE if the book doesn't have it. */
+    public int move(int state) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = data.getInt(HEADER_SIZE + 4 * mid);
+            if (key < state) {
+                low = mid + 1;
+            } else if (key > state) {
+                high = mid - 1;
+            } else {
+                return data.get(HEADER_SIZE + 4 * size + mid) & 0xFF;
+            }
+        }
+        return Rules.NONE;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // How many plies from the start the book was built for.
+    public int getPlies() {
+        return plies;
+    }
+
+    private static void write(Rules rules, int plies, TreeMap<Integer, Integer> moves, Path file) throws IOException {
+        if (rules.getMoveCount() > 256) {
+            throw new IllegalArgumentException("Move codes of " + rules + " don't fit in a byte");
+        }
+
+        int size = moves.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 5 * size);
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(rules.getFingers())
+                .putInt(rules.getHands())
+                .putInt(rules.getPlayers())
+                .putInt((rules.isRollover() ? ROLLOVER_FLAG : 0) | (rules.hasSplits() ? SPLITS_FLAG : 0))
+                .putInt(size)
+                .putInt(plies);
+        // Ascending states, the order move() searches.
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : moves.entrySet()) {
+            buffer.putInt(HEADER_SIZE + 4 * index, entry.getKey());
+            buffer.put(HEADER_SIZE + 4 * size + index, (byte) (int) entry.getValue());
+            index++;
+        }
+        buffer.clear();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,432 @@
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * A Chopsticks variant: how many fingers count as a full hand, how many hands each player
+ * has, how many players there are, and whether a hand that goes over rolls over (keeps the
+ * remainder) or is cut off (dies). The same object drives {@link ChopsticksGame} and the AI.
+ *
+ * <p>A position packs into one int: every hand is a base-{@code fingers} digit, player 1's
+ * hands first, and the player to move is the lowest digit (base {@code players}). States
+ * are dense, so they can index flat tables directly.
+ *
+ * <p>A tap move is ((ownHand * (players - 1) + seatOffset - 1) * hands + targetHand), where
+ * seatOffset counts seats clockwise from the mover to the target. With two players and two
+ * hands that is (ownHand << 1) | targetHand, i.e. left-left, left-right, right-left, right-right.
+ *
+ * <p>With splits on, the codes after the taps are splits: code {@code getTapCount() + k} moves
+ * the mover's fingers into the k-th way of spreading their current total over their hands.
+ * Those layouts are precomputed per total, so a split costs a table lookup. A split has to
+ * change the hands as a set (just swapping them doesn't count) and no hand may reach the limit.
+ */
+public final class Rules {
+    public static final Rules CLASSIC = new Rules(5, 2, 2, true);
+    public static final Rules CLASSIC_WITH_SPLITS = new Rules(5, 2, 2, true, true);
+
+    public static final int NONE = -1;
+
+    // Successor tables are precomputed only up to this many entries; bigger variants
+    // work the successors out with digit arithmetic instead.
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+    // Fixed, so a position has the same key in every run (keys can be saved to disk).
+    private static final long ZOBRIST_SEED = 0x43686F7073L;
+
+    private final int fingers;
+    private final int hands;
+    private final int players;
+    private final boolean rollover;
+    private final boolean splits;
+
+    private final int slots;
+    private final int[] place;
+    private final int stateCount;
+    private final int tapCount;
+    private final int moveCount;
+    private final String[] handNames;
+    private final String[][] moveNames;
+
+    // Every way to spread t fingers over one player's hands is a row of splitHands;
+    // the rows for total t are splitStart[t] up to splitStart[t + 1].
+    private final int[] splitStart;
+    private final int[] splitHands;
+    private final long[] splitSignatures;
+    private final String[][] splitNames;
+    // (hands + 1)^value: summing it over a player's hands identifies the hands as a multiset.
+    private final long[] signatureWeight;
+    private final int[] successors;
+    private final byte[] winners;
+    // Zobrist keys: one random long per (slot, fingers) and one per player to move.
+    private final long[] handKeys;
+    private final long[] sideKeys;
+
+    public Rules(int fingers, int hands, int players, boolean rollover) {
+        this(fingers, hands, players, rollover, false);
+    }
+
+    public Rules(int fingers, int hands, int players, boolean rollover, boolean splits) {
+        if (fingers < 2 || hands < 1 || players < 2) {
+            throw new IllegalArgumentException("Need at least 2 fingers, 1 hand and 2 players");
+        }
+        this.fingers = fingers;
+        this.hands = hands;
+        this.players = players;
+        this.rollover = rollover;
+        this.splits = splits;
+
+        slots = players * hands;
+        place = new int[slots];
+        long weight = players;
+        for (int slot = slots - 1; slot >= 0; slot--) {
+            place[slot] = (int) weight;
+            weight *= fingers;
+            if (weight > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("State space too large: " + this);
+            }
+        }
+        stateCount = (int) weight;
+        tapCount = hands * (players - 1) * hands;
+
+        SplittableRandom keys = new SplittableRandom(ZOBRIST_SEED);
+        handKeys = new long[slots * fingers];
+        for (int i = 0; i < handKeys.length; i++) handKeys[i] = keys.nextLong();
+        sideKeys = new long[players];
+        for (int i = 0; i < sideKeys.length; i++) sideKeys[i] = keys.nextLong();
+
+        signatureWeight = new long[fingers];
+        for (int value = 0; value < fingers; value++) {
+            signatureWeight[value] = value == 0 ? 1 : signatureWeight[value - 1] * (hands + 1);
+        }
+        int maxTotal = hands * (fingers - 1);
+        int layouts = 1;
+        for (int hand = 0; hand < hands; hand++) layouts *= fingers;
+        splitStart = new int[maxTotal + 2];
+        splitHands = new int[splits ? layouts * hands : 0];
+        splitSignatures = new long[splits ? layouts : 0];
+        splitNames = new String[splits ? layouts : 0][];
+        int maxSplits = 0;
+        if (splits) {
+            int row = 0;
+            int[] layout = new int[hands];
+            for (int total = 0; total <= maxTotal; total++) {
+                splitStart[total] = row;
+                for (int code = 0; code < layouts; code++) {
+                    int sum = 0;
+                    for (int hand = hands - 1, rest = code; hand >= 0; hand--, rest /= fingers) {
+                        layout[hand] = rest % fingers;
+                        sum += layout[hand];
+                    }
+                    if (sum != total) continue;
+
+                    String[] names = new String[hands + 1];
+                    names[0] = "split";
+                    for (int hand = 0; hand < hands; hand++) {
+                        splitHands[row * hands + hand] = layout[hand];
+                        splitSignatures[row] += signatureWeight[layout[hand]];
+                        names[hand + 1] = Integer.toString(layout[hand]);
+                    }
+                    splitNames[row++] = names;
+                }
+                maxSplits = Math.max(maxSplits, row - splitStart[total]);
+            }
+            splitStart[maxTotal + 1] = row;
+        }
+        moveCount = tapCount + maxSplits;
+
+        handNames = new String[hands];
+        for (int hand = 0; hand < hands; hand++) {
+            handNames[hand] = hands == 2 ? (hand == 0 ? "left" : "right") : "hand" + (hand + 1);
+        }
+        moveNames = new String[tapCount][];
+        for (int move = 0; move < tapCount; move++) {
+            String own = handNames[ownHand(move)];
+            String target = handNames[targetHand(move)];
+            moveNames[move] = players == 2 ? new String[]{own, target}
+                    : new String[]{own, target, "+" + seatOffset(move)};
+        }
+
+        if ((long) stateCount * moveCount <= MAX_TABLE_SIZE) {
+            winners = new byte[stateCount];
+            successors = new int[stateCount * moveCount];
+            for (int state = 0; state < stateCount; state++) {
+                winners[state] = (byte) computeWinner(state);
+                for (int move = 0; move < moveCount; move++) {
+                    successors[state * moveCount + move] = computeSuccessor(state, move);
+                }
+            }
+        } else {
+            winners = null;
+            successors = null;
+        }
+    }
+
+    public int getFingers() { return fingers; }
+    public int getHands() { return hands; }
+    public int getPlayers() { return players; }
+    public boolean isRollover() { return rollover; }
+    public boolean hasSplits() { return splits; }
+    public int getStateCount() { return stateCount; }
+    public int getTapCount() { return tapCount; }
+    public int getMoveCount() { return moveCount; }
+
+    // Hand values are indexed player-major: handValues[(player - 1) * hands + hand].
+    public int encode(int[] handValues, int currentPlayer) {
+        int state = currentPlayer - 1;
+        for (int slot = 0; slot < slots; slot++) {
+            state += handValues[slot] * place[slot];
+        }
+        return state;
+    }
+
+    // What one finger in slot adds to a packed state, for updating it a hand at a time.
+    public int slotWeight(int slot) {
+        return place[slot];
+    }
+
+    public int hand(int state, int player, int hand) {
+        return digit(state, (player - 1) * hands + hand);
+    }
+
+    public int currentPlayer(int state) {
+        return state % players + 1;
+    }
+
+    /**
+     * Zobrist key of a position: handKey of every hand XORed with sideKey of the player to move.
+     * Changing one hand or the turn changes the key with two XORs, which is how
+     * {@link ChopsticksGame#positionKey()} keeps it up to date.
+     */
+    public long positionKey(int state) {
+        long key = sideKey(currentPlayer(state));
+        for (int slot = 0; slot < slots; slot++) {
+            key ^= handKey(slot, digit(state, slot));
+        }
+        return key;
+    }
+
+    // The slot is player-major, as in encode.
+    public long handKey(int slot, int value) {
+        return handKeys[slot * fingers + value];
+    }
+
+    public long sideKey(int player) {
+        return sideKeys[player - 1];
+    }
+
+    /** Returns the state after {@code move}, or {@link #NONE} if the move is illegal or the game is over. */
+    public int successor(int state, int move) {
+        return successors != null ? successors[state * moveCount + move] : computeSuccessor(state, move);
+    }
+
+    /** Returns the last player standing, or 0 while at least two players still have a hand. */
+    public int winner(int state) {
+        return winners != null ? winners[state] : computeWinner(state);
+    }
+
+    // Batch forms of winner and successor for the first count states, with no per-state calls
+    // when the tables are precomputed (a gather and a block copy per state).
+    public void winners(int[] states, int count, int[] winners) {
+        if (this.winners != null) {
+            for (int i = 0; i < count; i++) winners[i] = this.winners[states[i]];
+        } else {
+            for (int i = 0; i < count; i++) winners[i] = computeWinner(states[i]);
+        }
+    }
+
+    // successors[i * getMoveCount() + move] is successor(states[i], move).
+    public void expand(int[] states, int count, int[] successors) {
+        for (int i = 0; i < count; i++) {
+            if (this.successors != null) {
+                System.arraycopy(this.successors, states[i] * moveCount, successors, i * moveCount, moveCount);
+            } else {
+                for (int move = 0; move < moveCount; move++) {
+                    successors[i * moveCount + move] = computeSuccessor(states[i], move);
+                }
+            }
+        }
+    }
+
+    // What a hand holding target fingers becomes when tapped by a hand holding attack fingers.
+    public int tap(int target, int attack) {
+        int total = target + attack;
+        return rollover ? total % fingers : (total >= fingers ? 0 : total);
+    }
+
+    public int move(int ownHand, int seatOffset, int targetHand) {
+        return (ownHand * (players - 1) + seatOffset - 1) * hands + targetHand;
+    }
+
+    public int ownHand(int move) { return move / hands / (players - 1); }
+    public int seatOffset(int move) { return move / hands % (players - 1) + 1; }
+    public int targetHand(int move) { return move % hands; }
+    public boolean isSplit(int move) { return move >= tapCount; }
+
+    public int splitCount(int total) {
+        return splits ? splitStart[total + 1] - splitStart[total] : 0;
+    }
+
+    // Fingers on the given hand after split number index of total fingers.
+    public int splitHand(int total, int index, int hand) {
+        return splitHands[(splitStart[total] + index) * hands + hand];
+    }
+
+    /**
+     * Whether split {@code index} of {@code total} only reorders the hands in
+     * {@code handValues[from .. from + hands)}, which is not a legal split.
+     */
+    public boolean isRearrangement(int[] handValues, int from, int total, int index) {
+        long signature = 0;
+        for (int hand = 0; hand < hands; hand++) {
+            signature += signatureWeight[handValues[from + hand]];
+        }
+        return signature == splitSignatures[splitStart[total] + index];
+    }
+
+    /** Returns the split code that leaves the mover with {@code newHands}, or {@link #NONE}. */
+    public int splitMove(int[] newHands) {
+        if (!splits || newHands.length != hands) return NONE;
+        int total = 0;
+        for (int value : newHands) {
+            if (value < 0 || value >= fingers) return NONE;
+            total += value;
+        }
+        for (int index = 0; index < splitCount(total); index++) {
+            boolean same = true;
+            for (int hand = 0; hand < hands && same; hand++) {
+                same = splitHand(total, index, hand) == newHands[hand];
+            }
+            if (same) return tapCount + index;
+        }
+        return NONE;
+    }
+
+    public String handName(int hand) {
+        return handNames[hand];
+    }
+
+    /** Returns the index of a hand name ("left"/"right", or "hand1".. for other hand counts), or -1. */
+    public int handIndex(String name) {
+        if (name == null) return -1;
+        // Callers nearly always pass the same constants handName hands out.
+        for (int hand = 0; hand < hands; hand++) {
+            if (handNames[hand] == name) return hand;
+        }
+        for (int hand = 0; hand < hands; hand++) {
+            if (handNames[hand].equalsIgnoreCase(name)) return hand;
+        }
+        return -1;
+    }
+
+    // Taps are {ownHand, targetHand}, plus "+seatOffset" when there are more than two players.
+    // Splits are {"split", fingers on each hand afterwards...}, which depends on the state.
+    public String[] moveNames(int state, int move) {
+        if (!isSplit(move)) {
+            return moveNames[move];
+        }
+        int index = move - tapCount;
+        int total = total(state, currentPlayer(state));
+        return index < splitCount(total) ? splitNames[splitStart[total] + index] : null;
+    }
+
+    private int digit(int state, int slot) {
+        return state / place[slot] % fingers;
+    }
+
+    private int total(int state, int player) {
+        int total = 0;
+        for (int hand = 0; hand < hands; hand++) {
+            total += hand(state, player, hand);
+        }
+        return total;
+    }
+
+    private boolean alive(int state, int player) {
+        for (int hand = 0; hand < hands; hand++) {
+            if (hand(state, player, hand) > 0) return true;
+        }
+        return false;
+    }
+
+    private int computeWinner(int state) {
+        int survivor = 0;
+        for (int player = 1; player <= players; player++) {
+            if (!alive(state, player)) continue;
+            if (survivor != 0) return 0;
+            survivor = player;
+        }
+        // Nobody left at all can't come out of a real game; credit the player who just moved.
+        return survivor != 0 ? survivor : (currentPlayer(state) + players - 2) % players + 1;
+    }
+
+    private int computeSuccessor(int state, int move) {
+        if (computeWinner(state) != 0) {
+            return NONE;
+        }
+        return isSplit(move) ? computeSplit(state, move) : computeTap(state, move);
+    }
+
+    private int computeTap(int state, int move) {
+        int player = currentPlayer(state);
+        int attackValue = hand(state, player, ownHand(move));
+        int targetPlayer = (player - 1 + seatOffset(move)) % players + 1;
+        int targetSlot = (targetPlayer - 1) * hands + targetHand(move);
+        int targetValue = digit(state, targetSlot);
+        if (attackValue == 0 || targetValue == 0) {
+            return NONE;
+        }
+
+        int next = state - (player - 1) + (tap(targetValue, attackValue) - targetValue) * place[targetSlot];
+        return next + (nextPlayer(next, player) - 1);
+    }
+
+    private int computeSplit(int state, int move) {
+        int player = currentPlayer(state);
+        int total = total(state, player);
+        int index = move - tapCount;
+        if (index >= splitCount(total)) {
+            return NONE;
+        }
+
+        int row = splitStart[total] + index;
+        long signature = 0;
+        int next = state - (player - 1);
+        for (int hand = 0; hand < hands; hand++) {
+            int slot = (player - 1) * hands + hand;
+            int value = digit(state, slot);
+            signature += signatureWeight[value];
+            next += (splitHands[row * hands + hand] - value) * place[slot];
+        }
+        if (signature == splitSignatures[row]) {
+            return NONE;
+        }
+        return next + (nextPlayer(next, player) - 1);
+    }
+
+    // Dead players are skipped; once nobody else is left the turn just passes to the next seat.
+    private int nextPlayer(int state, int player) {
+        for (int offset = 1; offset < players; offset++) {
+            int candidate = (player - 1 + offset) % players + 1;
+            if (alive(state, candidate)) return candidate;
+        }
+        return player % players + 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rules)) return false;
+        Rules other = (Rules) o;
+        return fingers == other.fingers && hands == other.hands && players == other.players
+                && rollover == other.rollover && splits == other.splits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingers, hands, players, rollover, splits);
+    }
+
+    @Override
+    public String toString() {
+        return fingers + " fingers, " + hands + " hands, " + players + " players, "
+                + (rollover ? "roll-over" : "cutoff") + (splits ? ", splits" : "");
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * What one Minmax search call did, handed to the listener set with
+ * {@link Minmax#setStatsListener} when the call returns.
+ */
+public final class SearchStats {
+    private final int depth;
+    private final int maxPly;
+    private final long nodes;
+    private final long leaves;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final long elapsedNanos;
+
+    SearchStats(int depth, int maxPly, long nodes, long leaves, long cutoffs, long firstMoveCutoffs,
+                long elapsedNanos) {
+        this.depth = depth;
+        this.maxPly = maxPly;
+        this.nodes = nodes;
+        this.leaves = leaves;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Depth asked for, or for a timed search the deepest iteration that finished.
+    public int getDepth() { return depth; }
+    // Deepest ply any line of the search reached (shorter than depth if every line ended early).
+    public int getMaxPly() { return maxPly; }
+    public long getNodes() { return nodes; }
+    // Positions scored by the evaluation function at the depth limit.
+    public long getLeaves() { return leaves; }
+    public long getCutoffs() { return cutoffs; }
+    public long getFirstMoveCutoffs() { return firstMoveCutoffs; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d (max ply %d): %d nodes, %d leaves, %d cutoffs (%.0f%% on the first move), %.3f ms",
+                depth, maxPly, nodes, leaves, cutoffs, 100 * getFirstMoveCutoffRate(), elapsedNanos / 1e6);
+    }
+}
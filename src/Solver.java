@@ -0,0 +1,163 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Solver {
+    // Values are from the point of view of the player to move.
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+
+    private static final Map<Rules, Solver> SOLVED = new ConcurrentHashMap<>();
+
+    private final Rules rules;
+    private final byte[] values;
+    private final short[] distances;
+    private final short[] bestMoves;
+
+    private Solver(Rules rules) {
+        if (rules.getPlayers() != 2) {
+            throw new IllegalArgumentException("Only two-player variants can be solved: " + rules);
+        }
+        if (rules.getMoveCount() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Move codes of " + rules + " don't fit in a short");
+        }
+        this.rules = rules;
+        int stateCount = rules.getStateCount();
+        values = new byte[stateCount];
+        distances = new short[stateCount];
+        bestMoves = new short[stateCount];
+        solve();
+    }
+
+    /** Returns the solved table for {@code rules}, solving it on first use. */
+    public static Solver of(Rules rules) {
+        return SOLVED.computeIfAbsent(rules, Solver::new);
+    }
+
+    public static Result lookup(ChopsticksGame game) {
+        return of(game.getRules()).lookup(game.getPackedState());
+    }
+
+    public Result lookup(int state) {
+        return new Result(values[state], distances[state], bestMoves[state]);
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * Retrograde analysis over the whole state space: decided positions are seeded as
+     * wins or losses, then values are propagated backwards through the predecessor graph
+     * in order of distance. Anything never reached is a draw (the players can cycle forever).
+     */
+    private void solve() {
+        int stateCount = rules.getStateCount();
+        int moveCount = rules.getMoveCount();
+        boolean[] solved = new boolean[stateCount];
+        int[] remaining = new int[stateCount];
+
+        int[] predecessorStart = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            for (int move = 0; move < moveCount; move++) {
+                int next = rules.successor(state, move);
+                if (next == Rules.NONE) continue;
+                remaining[state]++;
+                predecessorStart[next + 1]++;
+            }
+        }
+        for (int state = 0; state < stateCount; state++) {
+            predecessorStart[state + 1] += predecessorStart[state];
+        }
+        int[] predecessors = new int[predecessorStart[stateCount]];
+        int[] fill = predecessorStart.clone();
+        for (int state = 0; state < stateCount; state++) {
+            for (int move = 0; move < moveCount; move++) {
+                int next = rules.successor(state, move);
+                if (next != Rules.NONE) predecessors[fill[next]++] = state;
+            }
+        }
+
+        int[] queue = new int[stateCount];
+        int head = 0, tail = 0;
+        for (int state = 0; state < stateCount; state++) {
+            int winner = rules.winner(state);
+            if (winner == 0) continue;
+            values[state] = (byte) (winner == rules.currentPlayer(state) ? WIN : LOSS);
+            solved[state] = true;
+            queue[tail++] = state;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = predecessorStart[state]; i < predecessorStart[state + 1]; i++) {
+                int previous = predecessors[i];
+                if (solved[previous]) continue;
+
+                if (values[state] == LOSS) {
+                    values[previous] = WIN;
+                } else if (--remaining[previous] == 0) {
+                    values[previous] = LOSS;
+                } else {
+                    continue;
+                }
+                distances[previous] = (short) (distances[state] + 1);
+                solved[previous] = true;
+                queue[tail++] = previous;
+            }
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            if (!solved[state]) {
+                values[state] = DRAW;
+                distances[state] = -1;
+            }
+        }
+        for (int state = 0; state < stateCount; state++) {
+            bestMoves[state] = (short) pickMove(state);
+        }
+    }
+
+    // Win as fast as possible, lose as slowly as possible, and keep a draw a draw.
+    private int pickMove(int state) {
+        int bestMove = Rules.NONE;
+        int bestRank = Integer.MIN_VALUE;
+
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            int next = rules.successor(state, move);
+            if (next == Rules.NONE) continue;
+
+            int rank;
+            if (values[next] == DRAW) {
+                rank = 0;
+            } else if (values[next] == LOSS) {
+                rank = Short.MAX_VALUE - distances[next];
+            } else {
+                rank = Short.MIN_VALUE + distances[next];
+            }
+
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    public static final class Result {
+        private final int value;
+        private final int distance;
+        private final int bestMove;
+
+        private Result(int value, int distance, int bestMove) {
+            this.value = value;
+            this.distance = distance;
+            this.bestMove = bestMove;
+        }
+
+        public int getValue() { return value; }
+        // Plies to the end of the game under perfect play, -1 for draws.
+        public int getDistance() { return distance; }
+        public int getBestMove() { return bestMove; }
+    }
+}
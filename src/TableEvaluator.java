@@ -0,0 +1,98 @@
+import java.util.Random;
+
+/**
+ * Scores every position by how games through it actually ended: the table is filled from
+ * random self-play, and a position scores SCALE * (wins - losses) / games for each player.
+ * That catches what counting fingers misses, e.g. that with roll-over a hand of 4 is nearly
+ * dead. Positions the self-play never reached fall back to another evaluator.
+ */
+public final class TableEvaluator implements Evaluator {
+    // Keeps every score inside the win/loss scores Minmax uses.
+    private static final int SCALE = 90;
+    // Self-play games that go on longer than this count as draws.
+    private static final int MAX_PLIES = 200;
+    // One entry per (state, player); bigger variants don't get a table.
+    private static final int MAX_ENTRIES = 1 << 24;
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    private final Rules rules;
+    private final Evaluator fallback;
+    private final String name;
+    // scores[state * players + player - 1], or UNKNOWN.
+    private final byte[] scores;
+
+    private TableEvaluator(Rules rules, Evaluator fallback, String name, byte[] scores) {
+        this.rules = rules;
+        this.fallback = fallback;
+        this.name = name;
+        this.scores = scores;
+    }
+
+    /** Plays {@code games} random games and tabulates the results, falling back to finger counts. */
+    public static TableEvaluator fromSelfPlay(Rules rules, int games, long seed) {
+        return fromSelfPlay(rules, games, seed, new FingerCountEvaluator(rules));
+    }
+
+    public static TableEvaluator fromSelfPlay(Rules rules, int games, long seed, Evaluator fallback) {
+        int players = rules.getPlayers();
+        if ((long) rules.getStateCount() * players > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many positions for a table: " + rules);
+        }
+
+        int[] visits = new int[rules.getStateCount()];
+        int[] results = new int[rules.getStateCount() * players];
+        int[] line = new int[MAX_PLIES];
+        int[] legal = new int[rules.getMoveCount()];
+        Random random = new Random(seed);
+        int start = new ChopsticksGame(rules).getPackedState();
+
+        for (int game = 0; game < games; game++) {
+            int state = start;
+            int plies = 0;
+            while (rules.winner(state) == 0 && plies < MAX_PLIES) {
+                line[plies++] = state;
+                int count = 0;
+                for (int move = 0; move < rules.getMoveCount(); move++) {
+                    if (rules.successor(state, move) != Rules.NONE) legal[count++] = move;
+                }
+                if (count == 0) break;
+                state = rules.successor(state, legal[random.nextInt(count)]);
+            }
+
+            int winner = rules.winner(state);
+            for (int i = 0; i < plies; i++) {
+                visits[line[i]]++;
+                if (winner == 0) continue;
+                for (int player = 1; player <= players; player++) {
+                    results[line[i] * players + player - 1] += player == winner ? 1 : -1;
+                }
+            }
+        }
+
+        byte[] scores = new byte[results.length];
+        for (int state = 0; state < visits.length; state++) {
+            for (int player = 0; player < players; player++) {
+                int index = state * players + player;
+                scores[index] = visits[state] == 0 ? UNKNOWN
+                        : (byte) Math.round((float) SCALE * results[index] / visits[state]);
+            }
+        }
+        String name = "TableEvaluator(" + games + " games, seed " + seed + ", " + fallback.getName() + ")";
+        return new TableEvaluator(rules, fallback, name, scores);
+    }
+
+    @Override
+    public int evaluate(int state, int aiPlayer) {
+        byte score = scores[state * rules.getPlayers() + aiPlayer - 1];
+        return score != UNKNOWN ? score : fallback.evaluate(state, aiPlayer);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The solved value of every state of a variant, stored on disk at 2 bits per state and read
+ * through a memory map. Opening one costs the same for any size, nothing is copied onto the
+ * heap, and every JVM on the machine shares the same pages.
+ *
+ * <p>File layout: a 32-byte header (magic, version, fingers, hands, players, flags, state
+ * count, reserved; big-endian ints), then four states per byte, lowest bits first.
+ * Each 2-bit value is from the point of view of the player to move: 0 draw, 1 win, 2 loss.
+ *
+ * <pre>
+ * java Tablebase FILE FINGERS HANDS [cutoff] [splits]
+ * </pre>
+ */
+public final class Tablebase {
+    private static final int MAGIC = 0x43485442; // "CHTB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ROLLOVER_FLAG = 1;
+    private static final int SPLITS_FLAG = 2;
+
+    private static final int DRAW_BITS = 0;
+    private static final int WIN_BITS = 1;
+    private static final int LOSS_BITS = 2;
+
+    private final Rules rules;
+    private final MappedByteBuffer data;
+
+    private Tablebase(Rules rules, MappedByteBuffer data) {
+        this.rules = rules;
+        this.data = data;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java Tablebase FILE FINGERS HANDS [cutoff] [splits]");
+            System.exit(2);
+        }
+        boolean rollover = true;
+        boolean splits = false;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("cutoff")) rollover = false;
+            else if (args[i].equals("splits")) splits = true;
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        Rules rules = new Rules(Integer.parseInt(args[1]), Integer.parseInt(args[2]), 2, rollover, splits);
+
+        long start = System.nanoTime();
+        write(rules, Paths.get(args[0]));
+        System.out.printf("%s: %d states written to %s in %.1f s%n", rules, rules.getStateCount(), args[0],
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Solves {@code rules} (two players only) and writes the table to {@code file}. */
+    public static void write(Rules rules, Path file) throws IOException {
+        Solver solver = Solver.of(rules);
+        int stateCount = rules.getStateCount();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (stateCount + 3) / 4);
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(rules.getFingers())
+                .putInt(rules.getHands())
+                .putInt(rules.getPlayers())
+                .putInt((rules.isRollover() ? ROLLOVER_FLAG : 0) | (rules.hasSplits() ? SPLITS_FLAG : 0))
+                .putInt(stateCount)
+                .putInt(0);
+        for (int state = 0; state < stateCount; state++) {
+            int value = solver.lookup(state).getValue();
+            int bits = value == Solver.WIN ? WIN_BITS : value == Solver.LOSS ? LOSS_BITS : DRAW_BITS;
+            int index = HEADER_SIZE + state / 4;
+            buffer.put(index, (byte) (buffer.get(index) | bits << (state % 4 * 2)));
+        }
+        buffer.clear();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /** Maps a file written by {@link #write}; the rules come from its header. */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a tablebase: " + file);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Not a version " + VERSION + " tablebase: " + file);
+            }
+
+            int flags = data.getInt(20);
+            Rules rules = new Rules(data.getInt(8), data.getInt(12), data.getInt(16),
+                    (flags & ROLLOVER_FLAG) != 0, (flags & SPLITS_FLAG) != 0);
+            if (data.getInt(24) != rules.getStateCount()
+                    || channel.size() != HEADER_SIZE + (rules.getStateCount() + 3) / 4) {
+                throw new IOException("Truncated or mismatched tablebase: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            return new Tablebase(rules, data);
+        }
+    }
+
+    /** Solver.WIN, LOSS or DRAW for the player to move in {@code state}. */
+    public int value(int state) {
+        int bits = data.get(HEADER_SIZE + (state >>> 2)) >>> ((state & 3) << 1) & 3;
+        return bits == WIN_BITS ? Solver.WIN : bits == LOSS_BITS ? Solver.LOSS : Solver.DRAW;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+}
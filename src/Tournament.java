@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Headless AI-vs-AI runner. Every pair of players meets from both seats, games are spread
+ * over all cores, and the report has win rates, games and nodes per second, and a per-move
+ * latency histogram for each player.
+ *
+ * <pre>
+ * java Tournament [--games=N] [--threads=N] [--splits] [--cache] [--record=FILE] [player...]
+ * </pre>
+ * Players are "random", "depth:N" (fixed-depth minimax), "table:N" (the same with the
+ * self-play TableEvaluator), "mcts:N" (Monte Carlo tree search, N playouts a move) and
+ * "perfect" (solver table); the default line-up is random, depth:2 and depth:4. Most
+ * searching players are deterministic, so every game opens with a couple of random plies to
+ * tell games apart. For mcts players the node counts are playouts.
+ * With --cache they share one MoveCache and only search each (position, depth) once.
+ * With --record every game is appended to FILE (see GameRecordWriter).
+ */
+public class Tournament {
+    private static final int MAX_PLIES = 200;
+    private static final int OPENING_PLIES = 2;
+    private static final int CHUNK = 1000;
+    private static final int SELF_PLAY_GAMES = 200_000;
+    private static final int MOVE_CACHE_SIZE = 1 << 20;
+
+    private final Rules rules;
+    private final Player[] players;
+    private final int threads;
+    private final MoveCache moveCache;
+    private GameRecordWriter recorder;
+
+    public Tournament(Rules rules, String[] playerSpecs, int threads) {
+        this(rules, playerSpecs, threads, null);
+    }
+
+    public Tournament(Rules rules, String[] playerSpecs, int threads, MoveCache moveCache) {
+        this.rules = rules;
+        this.players = new Player[playerSpecs.length];
+        Evaluator table = null;
+        for (int i = 0; i < playerSpecs.length; i++) {
+            if (playerSpecs[i].startsWith("table:") && table == null) {
+                table = TableEvaluator.fromSelfPlay(rules, SELF_PLAY_GAMES, 1);
+            }
+            players[i] = Player.parse(rules, playerSpecs[i], table, moveCache);
+        }
+        this.threads = threads;
+        this.moveCache = moveCache;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Rules rules = Rules.CLASSIC;
+        MoveCache moveCache = null;
+        String recordFile = null;
+        List<String> specs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--splits")) {
+                rules = Rules.CLASSIC_WITH_SPLITS;
+            } else if (arg.equals("--cache")) {
+                moveCache = new MoveCache(MOVE_CACHE_SIZE);
+            } else if (arg.startsWith("--record=")) {
+                recordFile = arg.substring("--record=".length());
+            } else {
+                specs.add(arg);
+            }
+        }
+        if (specs.isEmpty()) {
+            specs.addAll(Arrays.asList("random", "depth:2", "depth:4"));
+        }
+
+        Tournament tournament = new Tournament(rules, specs.toArray(new String[0]), threads, moveCache);
+        if (recordFile == null) {
+            tournament.run(games);
+            return;
+        }
+        try (GameRecordWriter recorder = GameRecordWriter.open(Paths.get(recordFile), rules)) {
+            tournament.setRecorder(recorder);
+            tournament.run(games);
+            System.out.printf("%d games recorded to %s%n", recorder.getGameCount(), recordFile);
+        }
+    }
+
+    // Every game played from now on is also written here; null to stop recording.
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    public void run(int gamesPerPairing) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<int[]> pairings = new ArrayList<>();
+        List<List<Future<Stats>>> results = new ArrayList<>();
+        long seed = System.nanoTime();
+        long start = System.nanoTime();
+
+        try {
+            for (int first = 0; first < players.length; first++) {
+                for (int second = 0; second < players.length; second++) {
+                    if (first == second) continue;
+                    int[] pairing = {first, second};
+                    List<Future<Stats>> chunks = new ArrayList<>();
+                    for (int done = 0; done < gamesPerPairing; done += CHUNK) {
+                        int count = Math.min(CHUNK, gamesPerPairing - done);
+                        long chunkSeed = seed + 31L * pairings.size() + done;
+                        chunks.add(executor.submit(() -> playChunk(pairing[0], pairing[1], count, chunkSeed)));
+                    }
+                    pairings.add(pairing);
+                    results.add(chunks);
+                }
+            }
+
+            Stats total = new Stats(players.length);
+            System.out.printf("%s, %d threads%n%n", rules, threads);
+            System.out.printf("%-12s %-12s %10s %10s %10s%n", "Player 1", "Player 2", "P1 wins", "P2 wins", "Draws");
+            for (int i = 0; i < pairings.size(); i++) {
+                Stats pairing = new Stats(players.length);
+                for (Future<Stats> chunk : results.get(i)) {
+                    pairing.add(chunk.get());
+                }
+                total.add(pairing);
+                double games = pairing.games;
+                System.out.printf("%-12s %-12s %9.1f%% %9.1f%% %9.1f%%%n",
+                        players[pairings.get(i)[0]].name, players[pairings.get(i)[1]].name,
+                        100 * pairing.outcomes[1] / games, 100 * pairing.outcomes[2] / games,
+                        100 * pairing.outcomes[0] / games);
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%n%d games in %.1f s: %.0f games/s, %.0f nodes/s%n%n",
+                    total.games, seconds, total.games / seconds, total.totalNodes() / seconds);
+            if (moveCache != null) {
+                System.out.printf("Move cache: %d entries, %d hits, %d misses (%.1f%% hit rate)%n%n",
+                        moveCache.size(), moveCache.getHitCount(), moveCache.getMissCount(),
+                        100 * moveCache.getHitRate());
+            }
+            printLatencies(total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Stats playChunk(int first, int second, int games, long seed) throws IOException {
+        Random random = new Random(seed);
+        Stats stats = new Stats(players.length);
+        int[] seats = {first, second};
+        int[] line = new int[MAX_PLIES];
+
+        for (int i = 0; i < games; i++) {
+            ChopsticksGame game = new ChopsticksGame(rules);
+            int plies = 0;
+            while (!game.isGameOver() && plies < MAX_PLIES) {
+                int move;
+                int seat = seats[game.getCurrentPlayer() - 1];
+                if (plies < OPENING_PLIES) {
+                    move = randomMove(game, random);
+                } else {
+                    AiStrategy ai = players[seat].strategies.get();
+                    long nodesBefore = ai.getNodeCount();
+                    long moveStart = System.nanoTime();
+                    move = ai.chooseMove(game);
+                    stats.recordMove(seat, System.nanoTime() - moveStart, ai.getNodeCount() - nodesBefore);
+                }
+                // A strategy's bug would otherwise loop on the same position and end up in the record.
+                if (!game.makeMove(move)) {
+                    throw new IllegalStateException(players[seat].name + " chose illegal move " + move
+                            + " at ply " + plies + " (" + game.snapshot() + ")");
+                }
+                line[plies++] = move;
+            }
+            if (recorder != null) recorder.writeGame(line, plies);
+            stats.games++;
+            stats.outcomes[game.isGameOver() ? game.getWinner() : 0]++;
+        }
+        return stats;
+    }
+
+    private int randomMove(ChopsticksGame game, Random random) {
+        int[] legal = new int[rules.getMoveCount()];
+        int count = 0;
+        for (int move = 0; move < rules.getMoveCount(); move++) {
+            if (game.isValidMove(move)) legal[count++] = move;
+        }
+        return legal[random.nextInt(count)];
+    }
+
+    private void printLatencies(Stats total) {
+        System.out.printf("%-12s %12s %10s %10s %10s %10s %12s%n",
+                "Player", "Moves", "Mean", "p50 <", "p99 <", "Max <", "Nodes/move");
+        for (int seat = 0; seat < players.length; seat++) {
+            LatencyHistogram latency = total.latencies[seat];
+            long moves = latency.getCount();
+            if (moves == 0) continue;
+            System.out.printf("%-12s %12d %10s %10s %10s %10s %12.1f%n", players[seat].name, moves,
+                    LatencyHistogram.format(latency.getMeanNanos()),
+                    LatencyHistogram.format(latency.percentile(0.50)),
+                    LatencyHistogram.format(latency.percentile(0.99)),
+                    LatencyHistogram.format(latency.percentile(1.0)),
+                    (double) total.nodes[seat] / moves);
+        }
+
+        System.out.printf("%nLatency histogram (moves per bucket)%n%-10s", "< time");
+        for (Player player : players) {
+            System.out.printf(" %12s", player.name);
+        }
+        System.out.println();
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            boolean any = false;
+            for (int seat = 0; seat < players.length; seat++) {
+                any |= total.latencies[seat].getBucketCount(bucket) > 0;
+            }
+            if (!any) continue;
+            System.out.printf("%-10s", LatencyHistogram.format(LatencyHistogram.bucketLimit(bucket)));
+            for (int seat = 0; seat < players.length; seat++) {
+                System.out.printf(" %12d", total.latencies[seat].getBucketCount(bucket));
+            }
+            System.out.println();
+        }
+    }
+
+    private static final class Player {
+        private final String name;
+        // One strategy (and so one engine) per worker thread.
+        private final ThreadLocal<AiStrategy> strategies;
+
+        private Player(String name, Supplier<AiStrategy> strategy) {
+            this.name = name;
+            this.strategies = ThreadLocal.withInitial(strategy);
+        }
+
+        static Player parse(Rules rules, String spec, Evaluator table, MoveCache moveCache) {
+            Evaluator fingers = new FingerCountEvaluator(rules);
+            if (spec.equals("random")) return new Player(spec, () -> AiStrategy.random(engine(rules, fingers, moveCache)));
+            if (spec.equals("perfect")) return new Player(spec, AiStrategy::perfect);
+            int number = spec.indexOf(':') < 0 ? 0 : Integer.parseInt(spec.substring(spec.indexOf(':') + 1));
+            if (number > 0 && (spec.startsWith("depth:") || spec.startsWith("table:"))) {
+                Evaluator evaluator = spec.startsWith("table:") ? table : fingers;
+                return new Player(spec, () -> AiStrategy.fixedDepth(engine(rules, evaluator, moveCache), number));
+            }
+            if (number > 0 && spec.startsWith("mcts:")) {
+                return new Player(spec, () -> {
+                    Mcts mcts = new Mcts(rules);
+                    mcts.setIterations(number);
+                    return mcts;
+                });
+            }
+            throw new IllegalArgumentException("Unknown player: " + spec + " (use random, perfect, depth:N, table:N or mcts:N)");
+        }
+
+        private static Minmax engine(Rules rules, Evaluator evaluator, MoveCache moveCache) {
+            Minmax ai = new Minmax(rules, evaluator);
+            ai.setMoveCache(moveCache);
+            return ai;
+        }
+    }
+
+    private static final class Stats {
+        long games;
+        // Indexed by winner: 0 is a draw (the ply limit was reached).
+        final long[] outcomes = new long[3];
+        // Per seat: move times and positions searched.
+        final LatencyHistogram[] latencies;
+        final long[] nodes;
+
+        Stats(int playerCount) {
+            latencies = new LatencyHistogram[playerCount];
+            for (int seat = 0; seat < playerCount; seat++) {
+                latencies[seat] = new LatencyHistogram();
+            }
+            nodes = new long[playerCount];
+        }
+
+        void recordMove(int seat, long elapsed, long searched) {
+            latencies[seat].record(elapsed);
+            nodes[seat] += searched;
+        }
+
+        void add(Stats other) {
+            games += other.games;
+            for (int i = 0; i < outcomes.length; i++) outcomes[i] += other.outcomes[i];
+            for (int seat = 0; seat < nodes.length; seat++) {
+                latencies[seat].add(other.latencies[seat]);
+                nodes[seat] += other.nodes[seat];
+            }
+        }
+
+        long totalNodes() {
+            long sum = 0;
+            for (long n : nodes) sum += n;
+            return sum;
+        }
+    }
+}
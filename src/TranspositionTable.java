@@ -0,0 +1,58 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public final class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // Small variants get one slot per state; bigger ones share slots and check the key.
+    public static final int MAX_CAPACITY = 1 << 20;
+    // Largest move count the 13-bit move field holds (it stores move + 1, 0 for none).
+    public static final int MAX_MOVE_CODES = (1 << 13) - 2;
+
+    // Opaque access keeps each long entry atomic, so parallel searches can share the table
+    // without locks: a reader sees either the old entry or the new one, never half of each.
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Score in the low 10 bits (searches stay within the win/loss scores of +-500), then
+    // depth (7), bound type (2), best move + 1 (13) and the packed state as the upper 32 bits.
+    // An all-zero entry means the slot is empty.
+    private final long[] entries;
+
+    public TranspositionTable(int stateCount, int moveCount) {
+        if (moveCount > MAX_MOVE_CODES) {
+            throw new IllegalArgumentException("Too many move codes for the table: " + moveCount
+                    + " (at most " + MAX_MOVE_CODES + ")");
+        }
+        entries = new long[Math.min(stateCount, MAX_CAPACITY)];
+    }
+
+    /** Returns the entry for {@code state}, or 0 if the slot is empty or holds another state. */
+    public long probe(int state) {
+        long entry = (long) ENTRY.getOpaque(entries, index(state));
+        return entry != 0 && (int) (entry >>> 32) == state ? entry : 0;
+    }
+
+    public void store(int state, int depth, int flag, int score, int move) {
+        ENTRY.setOpaque(entries, index(state), (score + 0x200L)
+                | ((long) depth << 10)
+                | ((long) flag << 17)
+                | ((long) (move + 1) << 19)
+                | ((long) state << 32));
+    }
+
+    public void clear() {
+        Arrays.fill(entries, 0L);
+    }
+
+    private int index(int state) {
+        return Integer.remainderUnsigned(state, entries.length);
+    }
+
+    public static int score(long entry) { return (int) (entry & 0x3FF) - 0x200; }
+    public static int depth(long entry) { return (int) (entry >>> 10) & 0x7F; }
+    public static int flag(long entry) { return (int) (entry >>> 17) & 0x3; }
+    public static int move(long entry) { return (int) ((entry >>> 19) & 0x1FFF) - 1; }
+}
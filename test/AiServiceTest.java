@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiServiceTest {
+    private final AiService service = new AiService();
+
+    @AfterEach
+    void shutDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void aSearchReportsItsDepths() throws Exception {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        String[] move = service.requestMove(new ChopsticksGame(), AiService.MEDIUM, messages::add)
+                .get(10, TimeUnit.SECONDS);
+
+        assertNotNull(move);
+        assertFalse(messages.isEmpty());
+        assertTrue(messages.get(0).contains("depth 1"), messages.get(0));
+    }
+
+    @Test
+    void aCancelledRequestReportsNothing() throws Exception {
+        // Hold the worker inside another request's first progress message while ours is cancelled.
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String[]> busy = service.requestMoveWithin(new ChopsticksGame(), 10_000, message -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        List<String> messages = new CopyOnWriteArrayList<>();
+        CompletableFuture<String[]> request = service.requestMove(new ChopsticksGame(), AiService.MEDIUM, messages::add);
+        request.cancel(true);
+        busy.cancel(true);
+        release.countDown();
+
+        // The worker runs requests in order, so once this one is answered ours has had its turn.
+        service.requestMove(new ChopsticksGame(), AiService.EASY, null).get(10, TimeUnit.SECONDS);
+        assertTrue(request.isCancelled());
+        assertEquals(List.of(), messages);
+    }
+}
@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameRecordWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void aRejectedGameLeavesTheOthersReadable() throws IOException {
+        Path file = directory.resolve("games.chgr");
+        int[] first = {0, 3, 1};
+        int[] second = {2, 1};
+        try (GameRecordWriter writer = GameRecordWriter.open(file, Rules.CLASSIC)) {
+            writer.writeGame(first, first.length);
+            assertThrows(IllegalArgumentException.class, () -> writer.writeGame(new int[]{1, 2, -1}, 3));
+            writer.writeGame(second, second.length);
+            assertEquals(2, writer.getGameCount());
+        }
+
+        try (GameRecordReader reader = GameRecordReader.open(file)) {
+            assertTrue(reader.next());
+            assertArrayEquals(first, moves(reader));
+            assertTrue(reader.next());
+            assertArrayEquals(second, moves(reader));
+            assertFalse(reader.next());
+        }
+    }
+
+    private static int[] moves(GameRecordReader reader) {
+        int[] moves = new int[reader.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = reader.getMove(i);
+        }
+        return moves;
+    }
+}
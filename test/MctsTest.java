@@ -0,0 +1,36 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MctsTest {
+    @Test
+    void alwaysPlaysALegalMoveWhenTheArenaRunsFull() {
+        Rules rules = Rules.CLASSIC_WITH_SPLITS;
+        // Room for the root's children and nothing more, so every search fills the arena.
+        Mcts mcts = new Mcts(rules, ForkJoinPool.commonPool(), 1, 1 + rules.getMoveCount());
+        mcts.setIterations(200);
+        Minmax random = new Minmax(rules);
+        SplittableRandom seats = new SplittableRandom(7);
+
+        for (int game = 0; game < 20; game++) {
+            ChopsticksGame board = new ChopsticksGame(rules);
+            int mctsSeat = 1 + seats.nextInt(2);
+            for (int ply = 0; ply < 100 && !board.isGameOver(); ply++) {
+                int move = board.getCurrentPlayer() == mctsSeat
+                        ? mcts.chooseMove(board) : random.getRandomMoveCode(board);
+                assertTrue(board.makeMove(move), "illegal move " + move + " in game " + game + ", ply " + ply);
+            }
+        }
+    }
+
+    @Test
+    void rejectsAnArenaWithoutRoomForTheRootsChildren() {
+        Rules rules = Rules.CLASSIC_WITH_SPLITS;
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mcts(rules, ForkJoinPool.commonPool(), 1, rules.getMoveCount()));
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MinmaxTest {
+    // One worker runs the brothers in the same order every time, so the parallel search is
+    // repeatable and any change to what it answers shows up here.
+    private static final ForkJoinPool ONE_WORKER = new ForkJoinPool(1);
+
+    @AfterAll
+    static void shutDown() {
+        ONE_WORKER.shutdownNow();
+    }
+
+    @Test
+    void parallelSearchPlaysTheSerialMove() {
+        // (depth, state) pairs where a table score reused on a line that repeats makes the two
+        // searches disagree, see getBestMoveParallel. Everywhere else they must agree.
+        assertSameMoves(Rules.CLASSIC, 8, Set.of());
+        assertSameMoves(Rules.CLASSIC_WITH_SPLITS, 8, Set.of("7 57", "7 152"));
+    }
+
+    @Test
+    void aTablebaseWinIsPlayedOutTheFastestWay(@TempDir Path directory) throws IOException {
+        // Deep enough to see every classic win: the engine must never take longer than the
+        // solver's distance to win against the solver's own best defence.
+        Rules rules = Rules.CLASSIC;
+        int depth = 9;
+        Path file = directory.resolve("classic.tablebase");
+        Tablebase.write(rules, file);
+        Minmax ai = new Minmax(rules);
+        ai.setTablebase(Tablebase.open(file));
+        Solver solver = Solver.of(rules);
+
+        for (int state = 0; state < rules.getStateCount(); state++) {
+            Solver.Result result = solver.lookup(state);
+            if (rules.winner(state) != 0 || result.getValue() != Solver.WIN) continue;
+            GameSnapshot start = new GameSnapshot(rules, GameSnapshot.pack(state, 0, 0));
+            ChopsticksGame game = new ChopsticksGame(start);
+            int winner = game.getCurrentPlayer();
+            for (int ply = 0; ply < result.getDistance() && !game.isGameOver(); ply++) {
+                game.makeMove(game.getCurrentPlayer() == winner ? ai.getBestMoveCode(game, depth)
+                        : solver.lookup(game.getPackedState()).getBestMove());
+            }
+            assertEquals(winner, game.getWinner(), "not won within " + result.getDistance() + " plies from " + start);
+        }
+    }
+
+    private static void assertSameMoves(Rules rules, int maxDepth, Set<String> knownDifferences) {
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            for (int state = 0; state < rules.getStateCount(); state++) {
+                if (rules.winner(state) != 0 || knownDifferences.contains(depth + " " + state)) continue;
+                ChopsticksGame game = new ChopsticksGame(new GameSnapshot(rules, GameSnapshot.pack(state, 0, 0)));
+
+                String[] serial = new Minmax(rules, ONE_WORKER).getBestMove(game, depth);
+                String[] parallel = new Minmax(rules, ONE_WORKER).getBestMoveParallel(game, depth);
+                assertArrayEquals(serial, parallel, rules + ", depth " + depth + ", " + game.snapshot()
+                        + ": serial " + Arrays.toString(serial) + ", parallel " + Arrays.toString(parallel));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpeningBookTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void anUnreadableBookLeavesTheSearchWorking() throws IOException {
+        Path file = directory.resolve("broken.book");
+        Files.write(file, new byte[]{1, 2, 3});
+        Minmax ai = new Minmax();
+        ai.setOpeningBook(file);
+
+        ChopsticksGame game = new ChopsticksGame();
+        for (int ply = 0; ply < 4 && !game.isGameOver(); ply++) {
+            assertTrue(game.makeMove(ai.getBestMoveCode(game, 3)), "illegal move at ply " + ply);
+        }
+    }
+
+    @Test
+    void aMissingBookLeavesTheSearchWorking() {
+        Minmax ai = new Minmax();
+        ai.setOpeningBook(directory.resolve("missing.book"));
+
+        ChopsticksGame game = new ChopsticksGame();
+        assertNotNull(ai.getBestMoveParallel(game, 3));
+        assertTrue(game.makeMove(ai.getBestMoveCode(game, 3)));
+    }
+
+    @Test
+    void anIllegalBookMoveIsSearchedInstead() throws IOException {
+        Rules rules = Rules.CLASSIC_WITH_SPLITS;
+        Path file = directory.resolve("damaged.book");
+        OpeningBook.writeFromSolver(rules, 2, file);
+        ChopsticksGame game = new ChopsticksGame(rules);
+        int start = game.getPackedState();
+        int illegal = 0;
+        while (rules.successor(start, illegal) != Rules.NONE) illegal++;
+
+        // Entries are ascending states after the header, then one move byte per entry.
+        byte[] bytes = Files.readAllBytes(file);
+        int size = (bytes.length - 32) / 5;
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        int index = 0;
+        while (data.getInt(32 + 4 * index) != start) index++;
+        bytes[32 + 4 * size + index] = (byte) illegal;
+        Files.write(file, bytes);
+
+        Minmax ai = new Minmax(rules);
+        ai.setOpeningBook(file);
+        int move = ai.getBestMoveCode(game, 3);
+        assertNotEquals(illegal, move);
+        assertTrue(game.makeMove(move));
+    }
+}
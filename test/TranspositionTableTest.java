@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TranspositionTableTest {
+    // 162 move codes, most of them splits: more than the 7 bits the move field once had.
+    private static final Rules LARGE = new Rules(6, 4, 2, true, true);
+
+    @Test
+    void everyMoveCodeOfALargeVariantRoundTrips() {
+        TranspositionTable table = new TranspositionTable(LARGE.getStateCount(), LARGE.getMoveCount());
+        int state = LARGE.getStateCount() - 1;
+        for (int move = Rules.NONE; move < LARGE.getMoveCount(); move++) {
+            table.store(state, 64, TranspositionTable.LOWER, -100, move);
+            long entry = table.probe(state);
+            assertNotEquals(0, entry);
+            assertEquals(move, TranspositionTable.move(entry));
+            assertEquals(64, TranspositionTable.depth(entry));
+            assertEquals(TranspositionTable.LOWER, TranspositionTable.flag(entry));
+            assertEquals(-100, TranspositionTable.score(entry));
+        }
+    }
+
+    @Test
+    void aLargeMoveCodeLeavesTheKeyAlone() {
+        TranspositionTable table = new TranspositionTable(LARGE.getStateCount(), LARGE.getMoveCount());
+        int state = 12345;
+        table.store(state, 3, TranspositionTable.EXACT, 100, LARGE.getMoveCount() - 1);
+        assertNotEquals(0, table.probe(state));
+        // The slot another state would share, with a different key.
+        assertEquals(0, table.probe(state + TranspositionTable.MAX_CAPACITY));
+    }
+
+    @Test
+    void rejectsMoreMoveCodesThanTheFieldHolds() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TranspositionTable(1000, TranspositionTable.MAX_MOVE_CODES + 1));
+    }
+
+    @Test
+    void searchOnALargeVariantPlaysLegalMoves() {
+        Minmax ai = new Minmax(LARGE);
+        ChopsticksGame game = new ChopsticksGame(LARGE);
+        for (int ply = 0; ply < 6 && !game.isGameOver(); ply++) {
+            int move = ai.getBestMoveCode(game, 3);
+            assertNotEquals(Rules.NONE, move);
+            assertEquals(true, game.makeMove(move), "illegal move " + move + " at ply " + ply);
+        }
+    }
+}